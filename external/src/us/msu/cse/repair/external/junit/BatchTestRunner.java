@@ -0,0 +1,86 @@
+package us.msu.cse.repair.external.junit;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import us.msu.cse.repair.external.util.Util;
+
+/**
+ * Runs the tests of a batch of program variants in a single JVM, one after
+ * the other, each with its own class loader over the variant classes, the
+ * binary source directory and the binary test directory. As in the
+ * PersistentTestRunner, the dependences are on the class path of the runner.
+ *
+ * Arguments: the binary source directory, the binary test directory and the
+ * batch file, which has one line per variant:
+ * "[variant]\t[result file]\t[tests]", optionally followed by "\tFailFast",
+ * where the variant is a directory or a segment of a class store (see
+ * VariantClassLoader). The results of each variant are written to its result file by
+ * a TestResultWriter, so the caller can follow the progress of the batch and
+ * restart it after the variant that crashed or hung the JVM.
+ */
+public class BatchTestRunner {
+
+    public static void main(String args[]) throws Exception {
+        URL binJavaURL = new File(args[0].trim()).toURI().toURL();
+        URL binTestURL = new File(args[1].trim()).toURI().toURL();
+        List<String> lines = Util.readLines(new File(args[2].trim()));
+
+        PrintStream out = System.out;
+        PrintStream sink = JUnitTestRunner.getSink();
+        System.setOut(sink);
+        System.setErr(sink);
+
+        for (String line : lines) {
+            String strs[] = line.split("\t");
+            if (strs.length < 3 || strs.length > 4) {
+                out.println("RunFailed: " + line);
+                if (strs.length >= 2) {
+                    writeFailure(new File(strs[1]), out);
+                }
+                continue;
+            }
+
+            VariantClassLoader loader = VariantClassLoader.newInstance(strs[0], new URL[]{binJavaURL, binTestURL},
+                    BatchTestRunner.class.getClassLoader());
+
+            Thread.currentThread().setContextClassLoader(loader);
+            try {
+                Map<String, Long> timeouts = new HashMap<String, Long>();
+                List<String> tests = JUnitTestRunner.getTests(strs[2], timeouts);
+                boolean failFast = strs.length == 4 && strs[3].equals("FailFast");
+
+                TestResultWriter writer = new TestResultWriter(new File(strs[1]), tests.size());
+                try {
+                    List<JUnitTestRunner.TestOutcome> outcomes = JUnitTestRunner.runTests(tests, loader,
+                            failFast, timeouts, writer);
+                    writer.finish(outcomes.size() < tests.size());
+                } finally {
+                    writer.close();
+                }
+            } catch (Throwable e) {
+                // the result file ends as failed, so the variant is exceptional
+                out.println("RunFailed: " + e);
+                writeFailure(new File(strs[1]), out);
+            } finally {
+                Thread.currentThread().setContextClassLoader(BatchTestRunner.class.getClassLoader());
+                loader.close();
+            }
+            out.flush();
+        }
+
+        System.exit(0);
+    }
+
+    static void writeFailure(File resultFile, PrintStream out) {
+        try {
+            TestResultWriter.writeFailure(resultFile);
+        } catch (Exception e) {
+            // the caller then waits until the timeout of the variant
+            out.println("RunFailed: " + e);
+        }
+    }
+}
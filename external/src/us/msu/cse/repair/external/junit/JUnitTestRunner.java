@@ -1,9 +1,15 @@
 package us.msu.cse.repair.external.junit;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Request;
 import org.junit.runner.Result;
@@ -11,46 +17,217 @@ import us.msu.cse.repair.external.util.Util;
 
 public class JUnitTestRunner {
 
+    /**
+     * Arguments: the tests to run, optionally followed by "-failFast", by
+     * "-resultFile [path]" and by "-variant [variant] [class path]". With a
+     * result file, the results are written to it by a TestResultWriter and
+     * everything the tests print is discarded; otherwise they are printed to
+     * the standard output. With a variant, the program classes are loaded by
+     * a VariantClassLoader over the variant and the given class path rather
+     * than from the class path of the runner.
+     */
     public static void main(String args[]) throws Exception {
-        List<String> tests;
-        if (args[0].startsWith("@")) {
-            String path = args[0].trim().substring(1);
-            tests = Util.readLines(new File(path));
-        } else {
-            String testStrs[] = args[0].trim().split(File.pathSeparator);
-            tests = Arrays.asList(testStrs);
+        Map<String, Long> timeouts = new HashMap<String, Long>();
+        List<String> tests = getTests(args[0], timeouts);
+
+        boolean failFast = false;
+        String resultPath = null;
+        ClassLoader loader = JUnitTestRunner.class.getClassLoader();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].trim().equals("-failFast")) {
+                failFast = true;
+            } else if (args[i].trim().equals("-resultFile") && i + 1 < args.length) {
+                resultPath = args[++i].trim();
+            } else if (args[i].trim().equals("-variant") && i + 2 < args.length) {
+                String variant = args[++i].trim();
+                String paths[] = args[++i].trim().split(File.pathSeparator);
+                URL urls[] = new URL[paths.length];
+                for (int j = 0; j < paths.length; j++) {
+                    urls[j] = new File(paths[j]).toURI().toURL();
+                }
+                loader = VariantClassLoader.newInstance(variant, urls, loader);
+                Thread.currentThread().setContextClassLoader(loader);
+            }
         }
 
-        runTests(tests);
+        if (resultPath != null) {
+            PrintStream sink = getSink();
+            System.setOut(sink);
+            System.setErr(sink);
+
+            TestResultWriter writer = new TestResultWriter(new File(resultPath), tests.size());
+            try {
+                List<TestOutcome> outcomes = runTests(tests, loader, failFast, timeouts, writer);
+                writer.finish(outcomes.size() < tests.size());
+            } finally {
+                writer.close();
+            }
+        } else {
+            List<TestOutcome> outcomes = runTests(tests, loader, failFast, timeouts, null);
+            printResults(tests, outcomes, System.out);
+        }
         System.exit(0);
     }
 
-    private static void runTests(List<String> tests) throws ClassNotFoundException {
-        List<String> failedTests = new ArrayList<String>();
-        List<String> passedTests = new ArrayList<String>();
+    /**
+     * Reads the tests to run. A test may be given as "[test]=[timeout]", in
+     * which case its timeout in milliseconds is put into the timeouts map.
+     */
+    static List<String> getTests(String testsArg, Map<String, Long> timeouts) throws IOException {
+        List<String> entries;
+        if (testsArg.startsWith("@")) {
+            String path = testsArg.trim().substring(1);
+            entries = Util.readLines(new File(path));
+        } else {
+            String testStrs[] = testsArg.trim().split(File.pathSeparator);
+            entries = Arrays.asList(testStrs);
+        }
+
+        List<String> tests = new ArrayList<String>();
+        for (String entry : entries) {
+            int index = entry.indexOf('=');
+            if (index < 0) {
+                tests.add(entry);
+            } else {
+                String test = entry.substring(0, index);
+                tests.add(test);
+                timeouts.put(test, Long.parseLong(entry.substring(index + 1).trim()));
+            }
+        }
+        return tests;
+    }
+
+    /**
+     * Runs the tests in the given order. If failFast is true, the run stops at
+     * the first failing test. A test that does not finish within its timeout
+     * is abandoned and counted as failed. The outcome of each test is passed
+     * to the writer, if any, as soon as the test finishes.
+     */
+    static List<TestOutcome> runTests(List<String> tests, ClassLoader loader, boolean failFast,
+            Map<String, Long> timeouts, TestResultWriter writer)
+            throws ClassNotFoundException, InterruptedException, IOException {
+        List<TestOutcome> outcomes = new ArrayList<TestOutcome>();
 
-        for (String test : tests) {
+        for (int i = 0; i < tests.size(); i++) {
+            String test = tests.get(i);
             String strs[] = test.split("#");
             String className = strs[0];
             String methodName = strs[1];
 
-            Request request = Request.method(Class.forName(className), methodName);
-            Result res = new JUnitCore().run(request);
+            long startTime = System.currentTimeMillis();
+            Request request = Request.method(Class.forName(className, true, loader), methodName);
+            Long timeout = timeouts.get(test);
+            Result result;
+            if (timeout == null) {
+                result = new JUnitCore().run(request);
+            } else {
+                result = runWithTimeout(request, timeout, loader);
+            }
 
-            if (!res.wasSuccessful()) {
-                failedTests.add(test);
+            TestOutcome outcome = new TestOutcome();
+            outcome.test = test;
+            outcome.duration = System.currentTimeMillis() - startTime;
+            if (result == null) {
+                outcome.status = TestResultWriter.TIMED_OUT;
+            } else if (!result.wasSuccessful()) {
+                outcome.status = TestResultWriter.FAILED;
+                if (result.getFailureCount() > 0) {
+                    outcome.failureHash = String.valueOf(result.getFailures().get(0).getException()).hashCode();
+                }
             } else {
-                passedTests.add(test);
+                outcome.status = TestResultWriter.PASSED;
+            }
+            outcomes.add(outcome);
+
+            if (writer != null) {
+                writer.write(i, outcome.status, outcome.duration, outcome.failureHash);
+            }
+
+            if (failFast && outcome.status != TestResultWriter.PASSED) {
+                break;
             }
         }
 
-        printFailedTests(failedTests);
+        return outcomes;
     }
 
-    private static void printFailedTests(List<String> failedTests) {
-        System.out.println("FailureCount: " + failedTests.size());
-        for (String test : failedTests) {
-            System.out.println("FailedTest: " + test);
+    /**
+     * Returns the result of the test, or null if it timed out.
+     */
+    @SuppressWarnings("deprecation")
+    static Result runWithTimeout(final Request request, long timeout, ClassLoader loader)
+            throws InterruptedException {
+        final Result results[] = new Result[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                results[0] = new JUnitCore().run(request);
+            }
+        };
+        thread.setDaemon(true);
+        thread.setContextClassLoader(loader);
+        thread.start();
+        thread.join(timeout);
+
+        if (thread.isAlive()) {
+            thread.interrupt();
+            thread.join(100);
+            if (thread.isAlive()) {
+                try {
+                    thread.stop();
+                } catch (Throwable e) {
+                    // The thread is abandoned and dies with the runner
+                }
+            }
+            return null;
+        }
+        return results[0];
+    }
+
+    static void printResults(List<String> tests, List<TestOutcome> outcomes, PrintStream out) {
+        int failureCount = 0;
+        for (TestOutcome outcome : outcomes) {
+            if (outcome.status != TestResultWriter.PASSED) {
+                failureCount++;
+            }
+        }
+
+        out.println("FailureCount: " + failureCount);
+        for (TestOutcome outcome : outcomes) {
+            if (outcome.status != TestResultWriter.PASSED) {
+                out.println("FailedTest: " + outcome.test);
+            }
+        }
+        for (TestOutcome outcome : outcomes) {
+            if (outcome.status == TestResultWriter.TIMED_OUT) {
+                out.println("TimedOutTest: " + outcome.test);
+            }
         }
+        for (TestOutcome outcome : outcomes) {
+            out.println("TestTime: " + outcome.test + " " + outcome.duration);
+        }
+        if (outcomes.size() < tests.size()) {
+            out.println("PartialRun: " + outcomes.size() + " of " + tests.size());
+        }
+    }
+
+    static PrintStream getSink() {
+        return new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    static class TestOutcome {
+
+        String test;
+        byte status;
+        long duration;
+        int failureHash;
     }
 }
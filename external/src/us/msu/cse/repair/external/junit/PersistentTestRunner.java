@@ -0,0 +1,111 @@
+package us.msu.cse.repair.external.junit;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A long-lived test runner that executes the tests of many program variants
+ * in a single JVM. The dependences (including JUnit) are on the class path of
+ * the runner and stay loaded, while the program classes of each variant are
+ * loaded by a fresh class loader over the variant classes, the binary
+ * source directory and the binary test directory. If a file listing the
+ * dirty classes is given as third argument, i.e., the classes that may be
+ * modified, those depending on them and those with mutable static state,
+ * only these are loaded again for a variant whose classes are all dirty,
+ * and the other program and test classes stay loaded across the variants.
+ *
+ * Commands are read from the standard input, one per line:
+ * "Run\t[variant]\t[tests]", optionally followed by "\tFailFast",
+ * where the variant is a directory or a segment of a class store (see
+ * VariantClassLoader),
+ * and "Exit". The results of a run are written to the original standard
+ * output and terminated by "RunFinished".
+ * Anything printed by the tests themselves is discarded.
+ */
+public class PersistentTestRunner {
+
+    public static void main(String args[]) throws Exception {
+        URL binJavaURL = new File(args[0].trim()).toURI().toURL();
+        URL binTestURL = new File(args[1].trim()).toURI().toURL();
+        URL programURLs[] = new URL[]{binJavaURL, binTestURL};
+
+        Set<String> dirtyClasses = null;
+        URLClassLoader programLoader = null;
+        if (args.length > 2) {
+            dirtyClasses = new HashSet<String>(Files.readAllLines(Paths.get(args[2].trim()),
+                    StandardCharsets.UTF_8));
+            programLoader = new URLClassLoader(programURLs, PersistentTestRunner.class.getClassLoader());
+        }
+
+        PrintStream out = System.out;
+        PrintStream sink = JUnitTestRunner.getSink();
+        System.setOut(sink);
+        System.setErr(sink);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        out.println("RunnerReady");
+        out.flush();
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().equals("Exit")) {
+                break;
+            }
+
+            String strs[] = line.split("\t");
+            if (strs.length < 3 || strs.length > 4 || !strs[0].equals("Run")) {
+                out.println("RunFailed: unknown command");
+                out.flush();
+                continue;
+            }
+
+            VariantClassLoader loader;
+            try {
+                if (dirtyClasses != null
+                        && dirtyClasses.containsAll(VariantClassLoader.getVariantClassNames(strs[1]))) {
+                    loader = VariantClassLoader.newInstance(strs[1], programURLs, programLoader, dirtyClasses);
+                } else {
+                    // e.g., a new class, which the classes kept loaded cannot see
+                    loader = VariantClassLoader.newInstance(strs[1], programURLs,
+                            PersistentTestRunner.class.getClassLoader());
+                }
+            } catch (IOException e) {
+                out.println("RunFailed: " + e);
+                out.flush();
+                continue;
+            }
+
+            Thread.currentThread().setContextClassLoader(loader);
+            try {
+                Map<String, Long> timeouts = new HashMap<String, Long>();
+                List<String> tests = JUnitTestRunner.getTests(strs[2], timeouts);
+                boolean failFast = strs.length == 4 && strs[3].equals("FailFast");
+                List<JUnitTestRunner.TestOutcome> outcomes = JUnitTestRunner.runTests(tests, loader, failFast,
+                        timeouts, null);
+                JUnitTestRunner.printResults(tests, outcomes, out);
+                out.println("RunFinished");
+            } catch (Throwable e) {
+                out.println("RunFailed: " + e);
+            } finally {
+                Thread.currentThread().setContextClassLoader(PersistentTestRunner.class.getClassLoader());
+                loader.close();
+            }
+            out.flush();
+        }
+
+        System.exit(0);
+    }
+}
@@ -0,0 +1,68 @@
+package us.msu.cse.repair.external.junit;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the results of a test run to a file as fixed-size binary records, so
+ * that they cannot be mixed up with whatever the tests print. The file starts
+ * with a header (magic number, number of tests) and every record consists of
+ * the index of the test in the list given to the runner, its status, its
+ * running time in milliseconds and a hash of its failure (0 if none). A record
+ * with index -1 ends the file; its status is 1 if the run stopped early, and
+ * 2 if the tests could not be run at all.
+ *
+ * Each record is flushed as soon as the test finishes, so the results can be
+ * read while the tests are still running.
+ */
+public class TestResultWriter implements Closeable {
+
+    public static final int MAGIC = 0x41524a41;
+
+    public static final byte PASSED = 0;
+    public static final byte FAILED = 1;
+    public static final byte TIMED_OUT = 2;
+
+    private DataOutputStream out;
+
+    public TestResultWriter(File file, int numberOfTests) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(numberOfTests);
+        out.flush();
+    }
+
+    public void write(int index, byte status, long duration, int failureHash) throws IOException {
+        out.writeInt(index);
+        out.writeByte(status);
+        out.writeInt((int) Math.min(duration, Integer.MAX_VALUE));
+        out.writeInt(failureHash);
+        out.flush();
+    }
+
+    public void finish(boolean isPartial) throws IOException {
+        write(-1, isPartial ? (byte) 1 : (byte) 0, 0, 0);
+    }
+
+    /**
+     * Writes a result file without any test that ends as failed, so that the
+     * caller does not wait for results that will never come.
+     */
+    public static void writeFailure(File file) throws IOException {
+        TestResultWriter writer = new TestResultWriter(file, 0);
+        try {
+            writer.write(-1, (byte) 2, 0, 0);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
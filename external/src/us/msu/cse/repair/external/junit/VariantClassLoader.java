@@ -0,0 +1,142 @@
+package us.msu.cse.repair.external.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the program classes of a variant: its compiled classes, from the
+ * variant directory or from a segment of the class store written by the
+ * repair process, and the other classes from the given class path. A segment
+ * is given as "[store file]#[offset]", and its classes are defined directly
+ * from the mapped file.
+ *
+ * If a set of dirty classes is given, only these are loaded by this loader,
+ * and the other classes are delegated to the parent, which keeps them loaded
+ * across the variants.
+ */
+public class VariantClassLoader extends URLClassLoader {
+
+    private final Map<String, ByteBuffer> classes;
+    private Set<String> dirtyClasses;
+
+    VariantClassLoader(URL urls[], Map<String, ByteBuffer> classes, ClassLoader parent) {
+        super(urls, parent);
+        this.classes = classes;
+    }
+
+    /**
+     * Returns the names of the compiled classes of the variant, given as in
+     * newInstance.
+     */
+    public static Set<String> getVariantClassNames(String variant) throws IOException {
+        int index = variant.lastIndexOf('#');
+        if (index > 0 && variant.substring(index + 1).matches("\\d+")) {
+            File file = new File(variant.substring(0, index));
+            return readSegment(file, Long.parseLong(variant.substring(index + 1))).keySet();
+        }
+
+        Set<String> names = new HashSet<String>();
+        addClassNames(new File(variant), "", names);
+        return names;
+    }
+
+    static void addClassNames(File dir, String packagePrefix, Set<String> names) {
+        File files[] = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addClassNames(file, packagePrefix + file.getName() + ".", names);
+            } else if (file.getName().endsWith(".class")) {
+                String name = file.getName();
+                names.add(packagePrefix + name.substring(0, name.length() - ".class".length()));
+            }
+        }
+    }
+
+    public static VariantClassLoader newInstance(String variant, URL programURLs[], ClassLoader parent,
+            Set<String> dirtyClasses) throws IOException {
+        VariantClassLoader loader = newInstance(variant, programURLs, parent);
+        loader.dirtyClasses = dirtyClasses;
+        return loader;
+    }
+
+    public static VariantClassLoader newInstance(String variant, URL programURLs[], ClassLoader parent)
+            throws IOException {
+        int index = variant.lastIndexOf('#');
+        if (index > 0 && variant.substring(index + 1).matches("\\d+")) {
+            File file = new File(variant.substring(0, index));
+            long offset = Long.parseLong(variant.substring(index + 1));
+            return new VariantClassLoader(programURLs, readSegment(file, offset), parent);
+        }
+
+        URL urls[] = new URL[programURLs.length + 1];
+        urls[0] = new File(variant).toURI().toURL();
+        System.arraycopy(programURLs, 0, urls, 1, programURLs.length);
+        return new VariantClassLoader(urls, new HashMap<String, ByteBuffer>(), parent);
+    }
+
+    static Map<String, ByteBuffer> readSegment(File file, long offset) throws IOException {
+        Map<String, ByteBuffer> classes = new HashMap<String, ByteBuffer>();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            int length = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4).getInt();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset + 4, length);
+
+            int size = buffer.getInt();
+            for (int i = 0; i < size; i++) {
+                byte name[] = new byte[buffer.getShort() & 0xffff];
+                buffer.get(name);
+                int byteCodeLength = buffer.getInt();
+
+                ByteBuffer byteCode = buffer.slice();
+                byteCode.limit(byteCodeLength);
+                buffer.position(buffer.position() + byteCodeLength);
+                classes.put(new String(name, "UTF-8"), byteCode);
+            }
+        } finally {
+            // the mapping stays valid after the file is closed
+            raf.close();
+        }
+        return classes;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (dirtyClasses == null || !dirtyClasses.contains(name)) {
+            return super.loadClass(name, resolve);
+        }
+
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> c = findLoadedClass(name);
+            if (c == null) {
+                c = findClass(name);
+            }
+            if (resolve) {
+                resolveClass(c);
+            }
+            return c;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        ByteBuffer byteCode = classes.get(name);
+        if (byteCode != null) {
+            return defineClass(name, byteCode.duplicate(), (ProtectionDomain) null);
+        }
+        return super.findClass(name);
+    }
+}
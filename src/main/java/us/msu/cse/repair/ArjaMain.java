@@ -35,8 +35,14 @@ public class ArjaMain {
             maxGenerations = Integer.parseInt(maxGenerationsS);
         }
 
+        boolean steadyState = false;
+        String steadyStateS = parameterStrs.get("steadyState");
+        if (steadyStateS != null) {
+            steadyState = Boolean.parseBoolean(steadyStateS);
+        }
+
         ArjaProblem problem = new ArjaProblem(parameters);
-        AbstractRepairAlgorithm repairAlg = new Arja(problem);
+        AbstractRepairAlgorithm repairAlg = new Arja(problem, steadyState);
 
         repairAlg.setInputParameter("populationSize", populationSize);
         repairAlg.setInputParameter("maxEvaluations", populationSize * maxGenerations);
@@ -68,12 +68,196 @@ public class Interpreter {
             parameters.put("testExecutorName", testExecutorNameS);
         }
 
+        String testRunnerPoolSizeS = parameterStrs.get("testRunnerPoolSize");
+        if (testRunnerPoolSizeS != null) {
+            int testRunnerPoolSize = Integer.parseInt(testRunnerPoolSizeS);
+            parameters.put("testRunnerPoolSize", testRunnerPoolSize);
+        }
+
+        String maxRunsPerRunnerS = parameterStrs.get("maxRunsPerRunner");
+        if (maxRunsPerRunnerS != null) {
+            int maxRunsPerRunner = Integer.parseInt(maxRunsPerRunnerS);
+            parameters.put("maxRunsPerRunner", maxRunsPerRunner);
+        }
+
+        String failFastS = parameterStrs.get("failFast");
+        if (failFastS != null) {
+            boolean failFast = Boolean.parseBoolean(failFastS);
+            parameters.put("failFast", failFast);
+        }
+
+        String testOrderingS = parameterStrs.get("testOrdering");
+        if (testOrderingS != null) {
+            boolean testOrdering = Boolean.parseBoolean(testOrderingS);
+            parameters.put("testOrdering", testOrdering);
+        }
+
+        String testShardsS = parameterStrs.get("testShards");
+        if (testShardsS != null) {
+            int testShards = Integer.parseInt(testShardsS);
+            parameters.put("testShards", testShards);
+        }
+
         String waitTimeS = parameterStrs.get("waitTime");
         if (waitTimeS != null) {
             int waitTime = Integer.parseInt(waitTimeS);
             parameters.put("waitTime", waitTime);
         }
 
+        String perTestTimeoutFactorS = parameterStrs.get("perTestTimeoutFactor");
+        if (perTestTimeoutFactorS != null) {
+            double perTestTimeoutFactor = Double.parseDouble(perTestTimeoutFactorS);
+            parameters.put("perTestTimeoutFactor", perTestTimeoutFactor);
+        }
+
+        String layeredClassLoadingS = parameterStrs.get("layeredClassLoading");
+        if (layeredClassLoadingS != null) {
+            boolean layeredClassLoading = Boolean.parseBoolean(layeredClassLoadingS);
+            parameters.put("layeredClassLoading", layeredClassLoading);
+        }
+
+        String testWorkerPoolSizeS = parameterStrs.get("testWorkerPoolSize");
+        if (testWorkerPoolSizeS != null) {
+            int testWorkerPoolSize = Integer.parseInt(testWorkerPoolSizeS);
+            parameters.put("testWorkerPoolSize", testWorkerPoolSize);
+        }
+
+        String testResultCacheSizeS = parameterStrs.get("testResultCacheSize");
+        if (testResultCacheSizeS != null) {
+            int testResultCacheSize = Integer.parseInt(testResultCacheSizeS);
+            parameters.put("testResultCacheSize", testResultCacheSize);
+        }
+
+        String evaluationCacheSizeS = parameterStrs.get("evaluationCacheSize");
+        if (evaluationCacheSizeS != null) {
+            int evaluationCacheSize = Integer.parseInt(evaluationCacheSizeS);
+            parameters.put("evaluationCacheSize", evaluationCacheSize);
+        }
+
+        String testBatchSizeS = parameterStrs.get("testBatchSize");
+        if (testBatchSizeS != null) {
+            int testBatchSize = Integer.parseInt(testBatchSizeS);
+            parameters.put("testBatchSize", testBatchSize);
+        }
+
+        String compilerNameS = parameterStrs.get("compilerName");
+        if (compilerNameS != null) {
+            parameters.put("compilerName", compilerNameS);
+        }
+
+        String compilerPoolSizeS = parameterStrs.get("compilerPoolSize");
+        if (compilerPoolSizeS != null) {
+            int compilerPoolSize = Integer.parseInt(compilerPoolSizeS);
+            parameters.put("compilerPoolSize", compilerPoolSize);
+        }
+
+        String mutantSchemaCompilationS = parameterStrs.get("mutantSchemaCompilation");
+        if (mutantSchemaCompilationS != null) {
+            boolean mutantSchemaCompilation = Boolean.parseBoolean(mutantSchemaCompilationS);
+            parameters.put("mutantSchemaCompilation", mutantSchemaCompilation);
+        }
+
+        String compiledClassCacheSizeS = parameterStrs.get("compiledClassCacheSize");
+        if (compiledClassCacheSizeS != null) {
+            int compiledClassCacheSize = Integer.parseInt(compiledClassCacheSizeS);
+            parameters.put("compiledClassCacheSize", compiledClassCacheSize);
+        }
+
+        String compilationPrecheckS = parameterStrs.get("compilationPrecheck");
+        if (compilationPrecheckS != null) {
+            boolean compilationPrecheck = Boolean.parseBoolean(compilationPrecheckS);
+            parameters.put("compilationPrecheck", compilationPrecheck);
+        }
+
+        String compilabilityMatrixS = parameterStrs.get("compilabilityMatrix");
+        if (compilabilityMatrixS != null) {
+            boolean compilabilityMatrix = Boolean.parseBoolean(compilabilityMatrixS);
+            parameters.put("compilabilityMatrix", compilabilityMatrix);
+        }
+
+        String compilabilityMatrixPathS = parameterStrs.get("compilabilityMatrixPath");
+        if (compilabilityMatrixPathS != null) {
+            parameters.put("compilabilityMatrixPath", compilabilityMatrixPathS);
+        }
+
+        String classStoreSizeS = parameterStrs.get("classStoreSize");
+        if (classStoreSizeS != null) {
+            int classStoreSize = Integer.parseInt(classStoreSizeS);
+            parameters.put("classStoreSize", classStoreSize);
+        }
+
+        String evaluationThreadsS = parameterStrs.get("evaluationThreads");
+        if (evaluationThreadsS != null) {
+            int evaluationThreads = Integer.parseInt(evaluationThreadsS);
+            parameters.put("evaluationThreads", evaluationThreads);
+        }
+
+        String racingS = parameterStrs.get("racing");
+        if (racingS != null) {
+            boolean racing = Boolean.parseBoolean(racingS);
+            parameters.put("racing", racing);
+        }
+
+        String racingBatchSizeS = parameterStrs.get("racingBatchSize");
+        if (racingBatchSizeS != null) {
+            int racingBatchSize = Integer.parseInt(racingBatchSizeS);
+            parameters.put("racingBatchSize", racingBatchSize);
+        }
+
+        String racingConfidenceS = parameterStrs.get("racingConfidence");
+        if (racingConfidenceS != null) {
+            double racingConfidence = Double.parseDouble(racingConfidenceS);
+            parameters.put("racingConfidence", racingConfidence);
+        }
+
+        String pipelinedEvaluationS = parameterStrs.get("pipelinedEvaluation");
+        if (pipelinedEvaluationS != null) {
+            boolean pipelinedEvaluation = Boolean.parseBoolean(pipelinedEvaluationS);
+            parameters.put("pipelinedEvaluation", pipelinedEvaluation);
+        }
+
+        String pipelineCompileThreadsS = parameterStrs.get("pipelineCompileThreads");
+        if (pipelineCompileThreadsS != null) {
+            int pipelineCompileThreads = Integer.parseInt(pipelineCompileThreadsS);
+            parameters.put("pipelineCompileThreads", pipelineCompileThreads);
+        }
+
+        String pipelineDeliveryThreadsS = parameterStrs.get("pipelineDeliveryThreads");
+        if (pipelineDeliveryThreadsS != null) {
+            int pipelineDeliveryThreads = Integer.parseInt(pipelineDeliveryThreadsS);
+            parameters.put("pipelineDeliveryThreads", pipelineDeliveryThreads);
+        }
+
+        String pipelineTestThreadsS = parameterStrs.get("pipelineTestThreads");
+        if (pipelineTestThreadsS != null) {
+            int pipelineTestThreads = Integer.parseInt(pipelineTestThreadsS);
+            parameters.put("pipelineTestThreads", pipelineTestThreads);
+        }
+
+        String pipelineQueueSizeS = parameterStrs.get("pipelineQueueSize");
+        if (pipelineQueueSizeS != null) {
+            int pipelineQueueSize = Integer.parseInt(pipelineQueueSizeS);
+            parameters.put("pipelineQueueSize", pipelineQueueSize);
+        }
+
+        String spliceRenderingS = parameterStrs.get("spliceRendering");
+        if (spliceRenderingS != null) {
+            boolean spliceRendering = Boolean.parseBoolean(spliceRenderingS);
+            parameters.put("spliceRendering", spliceRendering);
+        }
+
+        String editBlacklistingS = parameterStrs.get("editBlacklisting");
+        if (editBlacklistingS != null) {
+            boolean editBlacklisting = Boolean.parseBoolean(editBlacklistingS);
+            parameters.put("editBlacklisting", editBlacklisting);
+        }
+
+        String bytecodePatchingS = parameterStrs.get("bytecodePatching");
+        if (bytecodePatchingS != null) {
+            boolean bytecodePatching = Boolean.parseBoolean(bytecodePatchingS);
+            parameters.put("bytecodePatching", bytecodePatching);
+        }
+
         String patchOutputRootS = parameterStrs.get("patchOutputRoot");
         if (patchOutputRootS != null) {
             parameters.put("patchOutputRoot", patchOutputRootS);
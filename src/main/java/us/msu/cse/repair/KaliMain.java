@@ -11,6 +11,11 @@ public class KaliMain {
         HashMap<String, String> parameterStrs = Interpreter.getParameterStrings(args);
         HashMap<String, Object> parameters = Interpreter.getBasicParameterSetting(parameterStrs);
 
+        // Kali only needs to know whether a candidate is test-adequate
+        if (!parameters.containsKey("failFast")) {
+            parameters.put("failFast", true);
+        }
+
         Kali problem = new Kali(parameters);
         AbstractRepairAlgorithm repairAlg = new KaliAlg(problem);
         repairAlg.execute();
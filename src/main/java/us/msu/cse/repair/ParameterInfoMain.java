@@ -28,6 +28,106 @@ public class ParameterInfoMain {
         System.out.println("-DwaitTime: the allowed maximum time (ms) to execute all the considered "
                 + "\n            tests of a program variant, default 6000ms");
         System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DperTestTimeoutFactor: if set, each test gets its own timeout, namely its running "
+                + "\n                        time on the original program times this factor (at least 1000ms, "
+                + "\n                        at most waitTime), and all tests together get their total running "
+                + "\n                        time times this factor (at least waitTime), default not used");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DtestExecutorName: the test executor (ExternalTestExecutor, PooledTestExecutor, "
+                + "\n                    ShardedTestExecutor or InternalTestExecutor), default ExternalTestExecutor");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DlayeredClassLoading: if true, InternalTestExecutor loads the dependencies and the "
+                + "\n                        classes unaffected by any modification only once, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DtestWorkerPoolSize: the number of worker threads shared by the InternalTestExecutors, "
+                + "\n                       default the number of available processors");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DtestResultCacheSize: the number of test results cached by the bytecode of the variants, "
+                + "\n                        0 to disable the cache, default 0");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DevaluationCacheSize: the number of fitness values cached by the edits the solutions "
+                + "\n                       actually make, which are then not compiled and tested again, "
+                + "\n                       0 to disable the cache, default 0; the cache hits are not charged "
+                + "\n                       against the maximum number of evaluations");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DtestBatchSize: with ExternalTestExecutor, the number of variants of a generation whose "
+                + "\n                  tests are run in one JVM, default 1");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DcompilerName: the compiler of the variants (JavaJDKCompiler, i.e., javac, or "
+                + "\n                JavaECJCompiler, i.e., the Eclipse compiler), default JavaJDKCompiler");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DcompilerPoolSize: the number of warm compiler file managers shared by the "
+                + "\n                    compilations of the variants, default the number of available processors");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DmutantSchemaCompilation: if true, the edits are compiled once into a meta-program "
+                + "\n                            whose switches select the variant to test, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DcompiledClassCacheSize: the size in MB of the classes cached by the modified content "
+                + "\n                         of their source files, so that only the files with new edits are "
+                + "\n                         compiled, e.g. 64, default 0 (no cache)");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DcompilationPrecheck: if true, the variants are first checked by the Eclipse compiler "
+                + "\n                       without code generation, and those that certainly do not compile "
+                + "\n                       are rejected before javac runs, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DcompilabilityMatrix: if true, every single-edit variant is compiled in parallel at "
+                + "\n                       startup, and the manipulations and ingredients of a modification point "
+                + "\n                       that never compile are removed, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DcompilabilityMatrixPath: the file in which the results of the compilability matrix "
+                + "\n                           are kept for later runs on the same program, default null; the file is "
+                + "\n                           ignored if the compiler, its options or the class path changed");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DevaluationThreads: the number of threads on which the variants of a generation "
+                + "\n                    are compiled and tested, default 1");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DpipelinedEvaluation: if true, each variant is handed over as soon as it is built to "
+                + "\n                       a pipeline of compile, deliver (writing the classes for the tests) and "
+                + "\n                       test stages with bounded queues, so that the stages overlap; their "
+                + "\n                       utilisation and queue depths are printed at the end, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DpipelineCompileThreads: the number of threads of the compile stage, default the "
+                + "\n                          smaller of compilerPoolSize and the number of processors");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DpipelineDeliveryThreads: the number of threads of the deliver stage, default 1");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DpipelineTestThreads: the number of threads of the test stage, i.e., of variants "
+                + "\n                       tested at the same time, default evaluationThreads");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DpipelineQueueSize: the number of variants waiting before each stage of the "
+                + "\n                     pipeline, beyond which the previous stage waits, default 4");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DspliceRendering: if true, the modified sources of a variant are spliced from the "
+                + "\n                  text each edit was rendered to once, instead of rewriting the ASTs of "
+                + "\n                  the files for every variant, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DclassStoreSize: the size in MB of the memory-mapped file through which the classes "
+                + "\n                of the variants are passed to the external test runners, instead of a "
+                + "\n                new directory per variant, default 0 (no class store)");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DeditBlacklisting: if true, the errors of the variants that do not compile are "
+                + "\n                    attributed to their edits, and the edits learned not to compile are "
+                + "\n                    dropped from the later variants, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DbytecodePatching: if true, Kali applies its manipulations directly to the class files "
+                + "\n                     where the statement maps to a single range of instructions, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DtestRunnerPoolSize: the number of warm test runner JVMs used by "
+                + "\n                      PooledTestExecutor, default the number of available processors");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DmaxRunsPerRunner: the number of variants a warm test runner JVM executes "
+                + "\n                    before it is recycled, default 100");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DtestShards: the number of parallel JVMs among which ShardedTestExecutor splits "
+                + "\n               the tests of a variant, default the number of processors");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DfailFast: if true, a run that only decides whether a variant is test-adequate "
+                + "\n             stops at the first failing test, default false (true for Kali)");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DtestOrdering: if true, the tests that have most often failed per unit of running "
+                + "\n                 time so far are run first, default true with failFast or ShardedTestExecutor "
+                + "\n                 and false otherwise");
+        System.out.println("-------------------------------------------------------------------------------------");
         System.out.println("-DdiffFormat: if true, the output patch is a file generated by \"diff -u\"");
         System.out.println("-------------------------------------------------------------------------------------");
         System.out.println("-DgzoltarDataDir : the root directory of the output of Gzoltar 1.6.2,"
@@ -50,6 +150,21 @@ public class ParameterInfoMain {
         System.out.println("*************************************************************************************");
         System.out.println("-DingredientScreenerName : the ingreidient screening method (Direct, VarTypeMatch,"
                 + "\n                           MethodTypeMatch or VMTypeMatch), default Direct ");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DsteadyState : if true, a steady-state NSGA-II breeds a new child whenever one of the "
+                + "\n                -DevaluationThreads workers is free, instead of waiting for whole "
+                + "\n                generations, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-Dracing : if true, the negative tests and a random batch of the positive tests are run "
+                + "\n           first, and a variant failing some of them is not tested further if, even with "
+                + "\n           its failure rate lowered by a Hoeffding bound, it is dominated in the current "
+                + "\n           population; its failure rate is then raised by the bound, and the "
+                + "\n           estimate is not cached, default false");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DracingBatchSize : the number of positive tests run first with racing, default 100");
+        System.out.println("-------------------------------------------------------------------------------------");
+        System.out.println("-DracingConfidence : the confidence of the Hoeffding bound used for racing, "
+                + "\n                     default 0.95");
         System.out.println("*************************************************************************************");
     }
 }
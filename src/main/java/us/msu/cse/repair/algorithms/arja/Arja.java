@@ -2,11 +2,23 @@ package us.msu.cse.repair.algorithms.arja;
 
 import jmetal.metaheuristics.nsgaII.NSGAII;
 import us.msu.cse.repair.core.AbstractRepairAlgorithm;
+import us.msu.cse.repair.ec.algorithms.AsyncNSGAII;
+import us.msu.cse.repair.ec.algorithms.BatchNSGAII;
 import us.msu.cse.repair.ec.problems.ArjaProblem;
 
 public class Arja extends AbstractRepairAlgorithm {
 
     public Arja(ArjaProblem problem) throws Exception {
-        algorithm = new NSGAII(problem);
+        this(problem, false);
+    }
+
+    public Arja(ArjaProblem problem, boolean steadyState) throws Exception {
+        if (steadyState) {
+            algorithm = new AsyncNSGAII(problem);
+        } else if (problem.evaluatesGenerations()) {
+            algorithm = new BatchNSGAII(problem);
+        } else {
+            algorithm = new NSGAII(problem);
+        }
     }
 }
@@ -15,6 +15,7 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
 import us.msu.cse.repair.core.AbstractRepairProblem;
+import us.msu.cse.repair.core.compiler.BytecodePatcher;
 import us.msu.cse.repair.core.manipulation.InsertReturnManipulation;
 import us.msu.cse.repair.core.manipulation.RedirectBranchManipulation;
 import us.msu.cse.repair.core.parser.ModificationPoint;
@@ -80,7 +81,9 @@ public class Kali extends AbstractRepairProblem {
             return false;
         }
 
-        return runTests(mp, rewriter);
+        BytecodePatcher patcher = getBytecodePatcher();
+        Map<String, JavaFileObject> patchedClasses = (patcher == null) ? null : patcher.redirectBranch(mp, flag);
+        return runTests(mp, rewriter, patchedClasses);
     }
 
     boolean insertReturn() throws Exception {
@@ -107,7 +110,9 @@ public class Kali extends AbstractRepairProblem {
             return false;
         }
 
-        return runTests(mp, rewriter);
+        BytecodePatcher patcher = getBytecodePatcher();
+        Map<String, JavaFileObject> patchedClasses = (patcher == null) ? null : patcher.insertReturn(mp, flag);
+        return runTests(mp, rewriter, patchedClasses);
 
     }
 
@@ -129,13 +134,32 @@ public class Kali extends AbstractRepairProblem {
             return false;
         }
         Map<String, String> modifiedJavaSources = getModifiedJavaSources(astRewriters);
+
+        BytecodePatcher patcher = getBytecodePatcher();
+        Map<String, JavaFileObject> patchedClasses = (patcher == null) ? null : patcher.delete(mp);
+        boolean flag = invokeTestExecutor(modifiedJavaSources, patchedClasses);
+        if (flag && diffFormat) {
+            IO.savePatch(modifiedJavaSources, srcJavaDir, patchOutputRoot, 0);
+        }
+        return flag;
+    }
+
+    /**
+     * Runs the tests on the patched classes if the manipulation could be
+     * applied to the bytecode, and on the compiled sources otherwise. As the
+     * patched classes are not checked by the compiler, a variant passing the
+     * tests must also compile from the sources.
+     */
+    boolean invokeTestExecutor(Map<String, String> modifiedJavaSources, Map<String, JavaFileObject> patchedClasses)
+            throws Exception {
+        if (patchedClasses != null) {
+            return invokeTestExecutor(patchedClasses)
+                    && getCompiledClassesForTestExecution(modifiedJavaSources) != null;
+        }
+
         Map<String, JavaFileObject> compiledClasses = getCompiledClassesForTestExecution(modifiedJavaSources);
         if (compiledClasses != null) {
-            boolean flag = invokeTestExecutor(compiledClasses);
-            if (flag && diffFormat) {
-                IO.savePatch(modifiedJavaSources, srcJavaDir, patchOutputRoot, 0);
-            }
-            return flag;
+            return invokeTestExecutor(compiledClasses);
         } else {
             return false;
         }
@@ -144,35 +168,33 @@ public class Kali extends AbstractRepairProblem {
     boolean invokeTestExecutor(Map<String, JavaFileObject> compiledClasses) throws Exception {
         Set<String> samplePosTests = getSamplePositiveTests();
         ITestExecutor testExecutor = getTestExecutor(compiledClasses, samplePosTests);
+        testExecutor.setFailFast(failFast);
 
         boolean status = testExecutor.runTests();
         if (status && percentage != null && percentage < 1) {
             testExecutor = getTestExecutor(compiledClasses, positiveTests);
+            testExecutor.setFailFast(failFast);
             status = testExecutor.runTests();
             if (!testExecutor.isExceptional()) {
                 System.out.println("Failed tests: "
-                        + (testExecutor.getFailureCountInNegative() + testExecutor.getFailureCountInPositive()));
+                        + (testExecutor.getFailureCountInNegative() + testExecutor.getFailureCountInPositive())
+                        + (testExecutor.isLowerBound() ? " (at least)" : ""));
             }
         }
         return status;
     }
 
-    boolean runTests(ModificationPoint mp, ASTRewrite rewriter) throws Exception {
+    boolean runTests(ModificationPoint mp, ASTRewrite rewriter, Map<String, JavaFileObject> patchedClasses)
+            throws Exception {
         Map<String, ASTRewrite> astRewriters = new HashMap<String, ASTRewrite>();
         astRewriters.put(mp.getSourceFilePath(), rewriter);
 
         Map<String, String> modifiedJavaSources = getModifiedJavaSources(astRewriters);
-        Map<String, JavaFileObject> compiledClasses = getCompiledClassesForTestExecution(modifiedJavaSources);
-
-        if (compiledClasses != null) {
-            boolean flag = invokeTestExecutor(compiledClasses);
-            if (flag && diffFormat) {
-                IO.savePatch(modifiedJavaSources, srcJavaDir, patchOutputRoot, globalID);
-            }
-            return flag;
-        } else {
-            return false;
+        boolean flag = invokeTestExecutor(modifiedJavaSources, patchedClasses);
+        if (flag && diffFormat) {
+            IO.savePatch(modifiedJavaSources, srcJavaDir, patchOutputRoot, globalID);
         }
+        return flag;
     }
 
     ASTRewrite getASTRewriter(ModificationPoint mp) {
@@ -227,7 +249,7 @@ public class Kali extends AbstractRepairProblem {
     }
 
     void savePatch(String data) throws IOException {
-        File file = new File(patchOutputRoot, "Patch_" + (globalID++) + ".txt");
+        File file = new File(patchOutputRoot, "Patch_" + nextGlobalID() + ".txt");
         if (file.exists()) {
             file.delete();
         }
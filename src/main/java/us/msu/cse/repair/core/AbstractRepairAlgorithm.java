@@ -14,7 +14,12 @@ public abstract class AbstractRepairAlgorithm {
     protected Algorithm algorithm;
 
     public SolutionSet execute() throws ClassNotFoundException, JMException {
+        AbstractRepairProblem repairProblem = (AbstractRepairProblem) getProblem();
+        long startTime = System.currentTimeMillis();
+        int startEvaluations = repairProblem.getEvaluations();
         SolutionSet solutionSet = algorithm.execute();
+        printSearchStatistics(startTime, repairProblem.getEvaluations() - startEvaluations);
+        repairProblem.releaseResources();
         try {
             deleteWorkingDirs();
         } catch (IOException e) {
@@ -36,6 +41,20 @@ public abstract class AbstractRepairAlgorithm {
         return algorithm.getProblem();
     }
 
+    /**
+     * Prints the throughput of the search and the time it took to find the
+     * first test-adequate patch, which allow the algorithms to be compared.
+     */
+    void printSearchStatistics(long startTime, int evaluations) {
+        long firstPatchTime = ((AbstractRepairProblem) getProblem()).getFirstPatchTime();
+        long searchTime = Math.max(System.currentTimeMillis() - startTime, 1);
+        String firstPatch = (firstPatchTime == 0) ? "no test-adequate patch found"
+                : "first test-adequate patch after " + Math.max(firstPatchTime - startTime, 0) + " ms";
+        System.out.println("Search: " + evaluations + " evaluations in " + searchTime + " ms ("
+                + String.format("%.1f", evaluations * 60000.0 / searchTime) + " per minute), "
+                + ((AbstractRepairProblem) getProblem()).getEvaluationCacheHits() + " cache hits, " + firstPatch);
+    }
+
     private void deleteWorkingDirs() throws IOException {
         AbstractRepairProblem repairProblem = (AbstractRepairProblem) getProblem();
         String binWorkingRoot = repairProblem.getBinWorkingRoot();
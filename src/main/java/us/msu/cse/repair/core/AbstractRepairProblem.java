@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -17,8 +18,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.tools.JavaFileObject;
 import jmetal.core.Problem;
+import jmetal.core.Solution;
+import jmetal.core.SolutionSet;
 import jmetal.metaheuristics.moead.Utils;
 import jmetal.util.Configuration;
 import jmetal.util.JMException;
@@ -35,14 +43,25 @@ import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.text.edits.TextEdit;
-import us.msu.cse.repair.core.compiler.JavaJDKCompiler;
+import us.msu.cse.repair.core.compiler.BytecodePatcher;
+import us.msu.cse.repair.core.compiler.CompilabilityMatrix;
+import us.msu.cse.repair.core.compiler.CompilationPrechecker;
+import us.msu.cse.repair.core.compiler.CompiledClassCache;
+import us.msu.cse.repair.core.compiler.ECJNameEnvironment;
+import us.msu.cse.repair.core.compiler.EditBlacklist;
+import us.msu.cse.repair.core.compiler.ICompiler;
+import us.msu.cse.repair.core.compiler.JavaCompilerPool;
+import us.msu.cse.repair.core.compiler.JavaECJCompiler;
+import us.msu.cse.repair.core.compiler.MutantSchema;
 import us.msu.cse.repair.core.coverage.SeedLineGeneratorProcess;
 import us.msu.cse.repair.core.coverage.TestFilterProcess;
 import us.msu.cse.repair.core.faultlocalizer.*;
 import us.msu.cse.repair.core.filterrules.IngredientFilterRule;
 import us.msu.cse.repair.core.filterrules.ManipulationFilterRule;
 import us.msu.cse.repair.core.manipulation.AbstractManipulation;
+import us.msu.cse.repair.core.manipulation.Edit;
 import us.msu.cse.repair.core.manipulation.ManipulationFactory;
+import us.msu.cse.repair.core.manipulation.PatchRenderer;
 import us.msu.cse.repair.core.parser.FieldVarDetector;
 import us.msu.cse.repair.core.parser.FileASTRequestorImpl;
 import us.msu.cse.repair.core.parser.LCNode;
@@ -54,11 +73,23 @@ import us.msu.cse.repair.core.parser.SeedStatementInfo;
 import us.msu.cse.repair.core.parser.ingredient.AbstractIngredientScreener;
 import us.msu.cse.repair.core.parser.ingredient.IngredientMode;
 import us.msu.cse.repair.core.parser.ingredient.IngredientScreenerFactory;
+import us.msu.cse.repair.core.testexecutors.BatchTestExecutor;
 import us.msu.cse.repair.core.testexecutors.ExternalTestExecutor;
 import us.msu.cse.repair.core.testexecutors.ITestExecutor;
 import us.msu.cse.repair.core.testexecutors.InternalTestExecutor;
+import us.msu.cse.repair.core.testexecutors.MemoizedTestExecutor;
+import us.msu.cse.repair.core.testexecutors.PooledTestExecutor;
+import us.msu.cse.repair.core.testexecutors.ShardedTestExecutor;
+import us.msu.cse.repair.core.testexecutors.TestStatistics;
+import us.msu.cse.repair.core.testexecutors.TestResultCache;
+import us.msu.cse.repair.core.testexecutors.TestRunnerPool;
+import us.msu.cse.repair.core.testexecutors.TestWorkerPool;
 import us.msu.cse.repair.core.util.ClassFinder;
+import us.msu.cse.repair.core.util.ClassStore;
 import us.msu.cse.repair.core.util.CustomURLClassLoader;
+import us.msu.cse.repair.core.util.EvaluationCache;
+import us.msu.cse.repair.core.util.EvaluationPipeline;
+import us.msu.cse.repair.core.util.LayeredClassLoaders;
 import us.msu.cse.repair.core.util.Helper;
 import us.msu.cse.repair.core.util.IO;
 import us.msu.cse.repair.core.util.Patch;
@@ -83,6 +114,12 @@ public abstract class AbstractRepairProblem extends Problem {
     protected String xiaCoverage;
 
     protected Double percentage;
+
+    protected Boolean racing;
+    protected Integer racingBatchSize;
+    protected Double racingConfidence;
+    protected double[][] racingPopulation;
+    protected int racingCuts;
     protected Double thr;
 
     protected Integer maxNumberOfModificationPoints;
@@ -118,6 +155,9 @@ public abstract class AbstractRepairProblem extends Problem {
 
     protected String binWorkingRoot;
 
+    protected Integer classStoreSize;
+    protected ClassStore classStore;
+
     protected Set<String> binJavaClasses;
     protected Set<String> binExecuteTestClasses;
     protected String javaClassesInfoPath;
@@ -129,6 +169,62 @@ public abstract class AbstractRepairProblem extends Problem {
 
     protected String testExecutorName;
 
+    protected Integer testRunnerPoolSize;
+    protected Integer maxRunsPerRunner;
+    protected TestRunnerPool testRunnerPool;
+    protected Set<String> dirtyClasses;
+
+    protected Integer testShards;
+    protected TestStatistics testStatistics;
+    protected Boolean testOrdering;
+
+    protected Boolean failFast;
+
+    protected Double perTestTimeoutFactor;
+    protected Map<String, Integer> testTimeouts;
+    protected int totalTestTimeout;
+
+    static final int MIN_TEST_TIMEOUT = 1000;
+
+    protected Boolean layeredClassLoading;
+    protected LayeredClassLoaders layeredClassLoaders;
+
+    protected Integer testWorkerPoolSize;
+    protected TestWorkerPool testWorkerPool;
+
+    protected Integer testResultCacheSize;
+    protected Integer evaluationCacheSize;
+    protected EvaluationCache evaluationCache;
+    protected TestResultCache testResultCache;
+
+    protected Integer testBatchSize;
+    protected BatchTestExecutor batchTestExecutor;
+
+    protected Boolean mutantSchemaCompilation;
+    protected MutantSchema mutantSchema;
+
+    protected Boolean bytecodePatching;
+    protected BytecodePatcher bytecodePatcher;
+
+    protected Integer compiledClassCacheSize;
+    protected CompiledClassCache compiledClassCache;
+
+    protected Boolean compilationPrecheck;
+    protected CompilationPrechecker compilationPrechecker;
+
+    private int compilations;
+    private int failedCompilations;
+    private long compilationTime;
+
+    protected Boolean compilabilityMatrix;
+    protected String compilabilityMatrixPath;
+
+    protected Boolean editBlacklisting;
+    protected EditBlacklist editBlacklist;
+
+    protected Boolean spliceRendering;
+    protected PatchRenderer patchRenderer;
+
     protected String ingredientScreenerName;
     protected IngredientMode ingredientMode;
 
@@ -142,15 +238,32 @@ public abstract class AbstractRepairProblem extends Problem {
     protected String jvmPath;
     protected List<String> compilerOptions;
 
+    protected String compilerName;
+
+    protected Integer compilerPoolSize;
+    protected JavaCompilerPool javaCompilerPool;
+
+    protected Integer evaluationThreads;
+    protected ExecutorService evaluationPool;
+
+    protected Boolean pipelinedEvaluation;
+    protected Integer pipelineCompileThreads;
+    protected Integer pipelineDeliveryThreads;
+    protected Integer pipelineTestThreads;
+    protected Integer pipelineQueueSize;
+    protected EvaluationPipeline<PipelinedVariant> evaluationPipeline;
+    protected ECJNameEnvironment ecjNameEnvironment;
+
     protected URL[] progURLs;
 
     protected String gzoltarDataDir;
 
-    protected static int globalID;
+    protected int globalID;
     protected Set<Patch> patches;
 
     protected static long launchTime;
-    protected static int evaluations;
+    protected int evaluations;
+    protected long firstPatchTime;
 
     protected TestLineCoverageInterface proflTestCoverage;
     protected MethodLineCoverageInterface proflMethodCoverage;
@@ -180,6 +293,21 @@ public abstract class AbstractRepairProblem extends Problem {
         dependences = (Set<String>) parameters.get("dependences");
         percentage = (Double) parameters.get("percentage");
 
+        racing = (Boolean) parameters.get("racing");
+        if (racing == null) {
+            racing = false;
+        }
+
+        racingBatchSize = (Integer) parameters.get("racingBatchSize");
+        if (racingBatchSize == null) {
+            racingBatchSize = 100;
+        }
+
+        racingConfidence = (Double) parameters.get("racingConfidence");
+        if (racingConfidence == null) {
+            racingConfidence = 0.95;
+        }
+
         javaClassesInfoPath = (String) parameters.get("javaClassesInfoPath");
         testClassesInfoPath = (String) parameters.get("testClassesInfoPath");
 
@@ -214,6 +342,11 @@ public abstract class AbstractRepairProblem extends Problem {
             binWorkingRoot = "/tmp/working_" + id;
         }
 
+        classStoreSize = (Integer) parameters.get("classStoreSize");
+        if (classStoreSize == null) {
+            classStoreSize = 0;
+        }
+
         patchOutputRoot = (String) parameters.get("patchOutputRoot");
         if (patchOutputRoot == null) {
             patchOutputRoot = "patches_" + id;
@@ -239,6 +372,137 @@ public abstract class AbstractRepairProblem extends Problem {
             testExecutorName = "ExternalTestExecutor";
         }
 
+        testRunnerPoolSize = (Integer) parameters.get("testRunnerPoolSize");
+        if (testRunnerPoolSize == null) {
+            testRunnerPoolSize = Runtime.getRuntime().availableProcessors();
+        }
+
+        maxRunsPerRunner = (Integer) parameters.get("maxRunsPerRunner");
+        if (maxRunsPerRunner == null) {
+            maxRunsPerRunner = 100;
+        }
+
+        testShards = (Integer) parameters.get("testShards");
+        if (testShards == null) {
+            testShards = Runtime.getRuntime().availableProcessors();
+        }
+        testStatistics = new TestStatistics();
+
+        failFast = (Boolean) parameters.get("failFast");
+        if (failFast == null) {
+            failFast = false;
+        }
+
+        // the order of the tests only saves time if a run may stop early or
+        // is split into shards
+        testOrdering = (Boolean) parameters.get("testOrdering");
+        if (testOrdering == null) {
+            testOrdering = failFast || testExecutorName.equalsIgnoreCase("ShardedTestExecutor");
+        }
+
+        perTestTimeoutFactor = (Double) parameters.get("perTestTimeoutFactor");
+
+        layeredClassLoading = (Boolean) parameters.get("layeredClassLoading");
+        if (layeredClassLoading == null) {
+            layeredClassLoading = false;
+        }
+
+        testWorkerPoolSize = (Integer) parameters.get("testWorkerPoolSize");
+        if (testWorkerPoolSize == null) {
+            testWorkerPoolSize = Runtime.getRuntime().availableProcessors();
+        }
+
+        testResultCacheSize = (Integer) parameters.get("testResultCacheSize");
+        if (testResultCacheSize == null) {
+            testResultCacheSize = 0;
+        }
+
+        evaluationCacheSize = (Integer) parameters.get("evaluationCacheSize");
+        if (evaluationCacheSize == null) {
+            evaluationCacheSize = 0;
+        }
+
+        testBatchSize = (Integer) parameters.get("testBatchSize");
+        if (testBatchSize == null) {
+            testBatchSize = 1;
+        }
+
+        compilerName = (String) parameters.get("compilerName");
+        if (compilerName == null) {
+            compilerName = "JavaJDKCompiler";
+        }
+
+        compilerPoolSize = (Integer) parameters.get("compilerPoolSize");
+        if (compilerPoolSize == null) {
+            compilerPoolSize = Runtime.getRuntime().availableProcessors();
+        }
+
+        evaluationThreads = (Integer) parameters.get("evaluationThreads");
+        if (evaluationThreads == null) {
+            evaluationThreads = 1;
+        }
+
+        pipelinedEvaluation = (Boolean) parameters.get("pipelinedEvaluation");
+        if (pipelinedEvaluation == null) {
+            pipelinedEvaluation = false;
+        }
+
+        pipelineCompileThreads = (Integer) parameters.get("pipelineCompileThreads");
+        if (pipelineCompileThreads == null) {
+            pipelineCompileThreads = Math.min(compilerPoolSize, Runtime.getRuntime().availableProcessors());
+        }
+
+        pipelineDeliveryThreads = (Integer) parameters.get("pipelineDeliveryThreads");
+        if (pipelineDeliveryThreads == null) {
+            pipelineDeliveryThreads = 1;
+        }
+
+        pipelineTestThreads = (Integer) parameters.get("pipelineTestThreads");
+        if (pipelineTestThreads == null) {
+            pipelineTestThreads = evaluationThreads;
+        }
+
+        pipelineQueueSize = (Integer) parameters.get("pipelineQueueSize");
+        if (pipelineQueueSize == null) {
+            pipelineQueueSize = 4;
+        }
+
+        mutantSchemaCompilation = (Boolean) parameters.get("mutantSchemaCompilation");
+        if (mutantSchemaCompilation == null) {
+            mutantSchemaCompilation = false;
+        }
+
+        bytecodePatching = (Boolean) parameters.get("bytecodePatching");
+        if (bytecodePatching == null) {
+            bytecodePatching = false;
+        }
+
+        compiledClassCacheSize = (Integer) parameters.get("compiledClassCacheSize");
+        if (compiledClassCacheSize == null) {
+            compiledClassCacheSize = 0;
+        }
+
+        compilationPrecheck = (Boolean) parameters.get("compilationPrecheck");
+        if (compilationPrecheck == null) {
+            compilationPrecheck = false;
+        }
+
+        compilabilityMatrix = (Boolean) parameters.get("compilabilityMatrix");
+        if (compilabilityMatrix == null) {
+            compilabilityMatrix = false;
+        }
+        compilabilityMatrixPath = (String) parameters.get("compilabilityMatrixPath");
+
+        editBlacklisting = (Boolean) parameters.get("editBlacklisting");
+        if (editBlacklisting == null) {
+            editBlacklisting = false;
+        }
+
+        spliceRendering = (Boolean) parameters.get("spliceRendering");
+        if (spliceRendering == null) {
+            spliceRendering = false;
+        }
+
         ingredientScreenerName = (String) parameters.get("ingredientScreenerName");
         if (ingredientScreenerName == null) {
             ingredientScreenerName = "Direct";
@@ -303,6 +567,24 @@ public abstract class AbstractRepairProblem extends Problem {
             throw new Exception("The JVM path does not exist!");
         } else if (!(new File(externalProjRoot).exists())) {
             throw new Exception("The directory of external project does not exist!");
+        } else if (!compilerName.equalsIgnoreCase("JavaJDKCompiler")
+                && !compilerName.equalsIgnoreCase("JavaECJCompiler")) {
+            throw new Exception("The compiler '" + compilerName + "' is not found!");
+        } else if (compilerName.equalsIgnoreCase("JavaECJCompiler") && getBootClassPath().isEmpty()) {
+            throw new Exception("The rt.jar of the JVM, needed by the Eclipse compiler, does not exist!");
+        } else if (classStoreSize < 0 || classStoreSize >= 2048) {
+            throw new Exception("The size of the class store must be between 0 and 2047 MB!");
+        } else if (evaluationThreads < 1) {
+            throw new Exception("The number of evaluation threads must be at least 1!");
+        } else if (pipelinedEvaluation && (pipelineCompileThreads < 1 || pipelineDeliveryThreads < 1
+                || pipelineTestThreads < 1 || pipelineQueueSize < 1)) {
+            throw new Exception("Each stage of the evaluation pipeline needs at least 1 thread and 1 queue slot!");
+        } else if (pipelinedEvaluation && testBatchSize > 1) {
+            throw new Exception("The tests of the variants cannot be run in batches by the evaluation pipeline!");
+        } else if (racing && percentage != null && percentage < 1) {
+            throw new Exception("Racing cannot be combined with a percentage of sampled positive tests!");
+        } else if (racing && (racingBatchSize < 1 || racingConfidence <= 0 || racingConfidence >= 1)) {
+            throw new Exception("Racing needs a first batch of at least 1 test and a confidence in (0, 1)!");
         }
     }
 
@@ -318,8 +600,17 @@ public abstract class AbstractRepairProblem extends Problem {
         invokeManipulationInitializer();
         invokeModificationPointsTrimmer();
         invokeTestFilter();
+        invokeTestTimeoutsInitializer();
         invokeCompilerOptionsInitializer();
         invokeProgURLsInitializer();
+        invokeCompiledClassCacheInitializer();
+        invokeCompilationPrecheckerInitializer();
+        invokeCompilabilityMatrixInitializer();
+        invokeEditBlacklistInitializer();
+        invokePatchRendererInitializer();
+        invokeMutantSchemaInitializer();
+        invokeTestResultCacheInitializer();
+        invokeEvaluationCacheInitializer();
     }
 
     void invokeClassFinder() throws ClassNotFoundException, IOException {
@@ -549,6 +840,54 @@ public abstract class AbstractRepairProblem extends Problem {
         System.out.println("Filtering of the tests is finished!");
     }
 
+    void invokeTestTimeoutsInitializer() throws IOException, InterruptedException {
+        if (perTestTimeoutFactor == null) {
+            return;
+        }
+
+        System.out.println("Measuring of the test durations starts...");
+        File emptyDir = new File(binWorkingRoot, "bin_original");
+        emptyDir.mkdirs();
+
+        // On the original program, every test may run for up to waitTime
+        Map<String, Integer> initialTimeouts = new HashMap<String, Integer>();
+        for (String test : positiveTests) {
+            initialTimeouts.put(test, waitTime);
+        }
+        for (String test : negativeTests) {
+            initialTimeouts.put(test, waitTime);
+        }
+
+        ExternalTestExecutor testExecutor = new ExternalTestExecutor(positiveTests, negativeTests, null, binJavaDir,
+                binTestDir, dependences, emptyDir.getCanonicalPath(), externalProjRoot, jvmPath, waitTime);
+        testExecutor.setTestStatistics(testStatistics);
+        testExecutor.setTestTimeouts(initialTimeouts);
+        testExecutor.runTests();
+
+        Map<String, Long> testTimes = testExecutor.getTestTimes();
+        testTimeouts = new HashMap<String, Integer>();
+        long totalDuration = 0;
+        for (String test : initialTimeouts.keySet()) {
+            Long duration = (testTimes != null) ? testTimes.get(test) : null;
+            if (duration == null || testExecutor.getTimedOutTests().contains(test)) {
+                testTimeouts.put(test, waitTime);
+                totalDuration += waitTime;
+            } else {
+                int timeout = (int) Math.min(duration * perTestTimeoutFactor, waitTime);
+                testTimeouts.put(test, Math.max(timeout, MIN_TEST_TIMEOUT));
+                totalDuration += duration;
+            }
+        }
+
+        // the per-test timeouts only bound the tests individually, so a
+        // variant slowing every test down is also stopped once all its tests
+        // together take this factor times as long as on the original program
+        totalTestTimeout = (int) Math.min(Math.max(waitTime, totalDuration * perTestTimeoutFactor),
+                Integer.MAX_VALUE);
+
+        System.out.println("Measuring of the test durations is finished!");
+    }
+
     void invokeCompilerOptionsInitializer() {
         compilerOptions = new ArrayList<String>();
         compilerOptions.add("-nowarn");
@@ -576,6 +915,192 @@ public abstract class AbstractRepairProblem extends Problem {
         progURLs = Helper.getURLs(tempList);
     }
 
+    void invokeCompiledClassCacheInitializer() {
+        if (compiledClassCacheSize > 0) {
+            compiledClassCache = new CompiledClassCache(compiledClassCacheSize * 1024L * 1024L);
+        }
+    }
+
+    void invokeCompilationPrecheckerInitializer() {
+        // the Eclipse compiler itself needs no precheck
+        if (!compilationPrecheck || compilerName.equalsIgnoreCase("JavaECJCompiler")) {
+            return;
+        }
+        if (getBootClassPath().isEmpty()) {
+            System.out.println("Compilation precheck disabled: no rt.jar found for " + jvmPath);
+            return;
+        }
+
+        Map<String, String> javaSources = new HashMap<String, String>();
+        for (ModificationPoint mp : modificationPoints) {
+            String sourceFilePath = mp.getSourceFilePath();
+            javaSources.put(sourceFilePath, sourceContents.get(sourceFilePath));
+        }
+        compilationPrechecker = new CompilationPrechecker(getECJNameEnvironment(), compilerOptions);
+        compilationPrechecker.calibrate(javaSources);
+    }
+
+    /**
+     * Compiles every single-edit variant in parallel, and removes the
+     * manipulations of a modification point that compile with none of its
+     * ingredients, as well as the ingredients that compile with none of its
+     * manipulations.
+     */
+    void invokeCompilabilityMatrixInitializer() throws Exception {
+        if (!compilabilityMatrix) {
+            return;
+        }
+
+        System.out.println("Compilability matrix computation starts...");
+        File file = (compilabilityMatrixPath == null) ? null : new File(compilabilityMatrixPath);
+        CompilabilityMatrix matrix = new CompilabilityMatrix(file,
+                CompilabilityMatrix.getFingerprint(compilerName, compilerOptions));
+        ExecutorService executor = Executors.newFixedThreadPool(compilerPoolSize);
+
+        int numberOfManipulations = 0;
+        int numberOfIngredients = 0;
+        try {
+            for (int i = 0; i < modificationPoints.size(); i++) {
+                ModificationPoint mp = modificationPoints.get(i);
+                List<String> manips = availableManipulations.get(i);
+                List<Statement> ingredients = mp.getIngredients();
+
+                List<List<Future<Boolean>>> futures = new ArrayList<List<Future<Boolean>>>();
+                for (String manipName : manips) {
+                    List<Future<Boolean>> row = new ArrayList<Future<Boolean>>();
+                    if (manipName.equalsIgnoreCase("Delete")) {
+                        row.add(submitCompilabilityCheck(executor, matrix, mp, manipName, null));
+                    } else {
+                        for (Statement ingredient : ingredients) {
+                            row.add(submitCompilabilityCheck(executor, matrix, mp, manipName, ingredient));
+                        }
+                    }
+                    futures.add(row);
+                }
+
+                boolean usedIngredients[] = new boolean[ingredients.size()];
+                int k = 0;
+                Iterator<String> iter = manips.iterator();
+                while (iter.hasNext()) {
+                    boolean isDelete = iter.next().equalsIgnoreCase("Delete");
+                    List<Future<Boolean>> row = futures.get(k++);
+
+                    boolean isUsed = false;
+                    for (int j = 0; j < row.size(); j++) {
+                        if (row.get(j).get()) {
+                            isUsed = true;
+                            if (!isDelete) {
+                                usedIngredients[j] = true;
+                            }
+                        }
+                    }
+                    if (!isUsed) {
+                        iter.remove();
+                        numberOfManipulations++;
+                    }
+                }
+
+                for (int j = ingredients.size() - 1; j >= 0; j--) {
+                    if (!usedIngredients[j]) {
+                        ingredients.remove(j);
+                        numberOfIngredients++;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+            matrix.save();
+        }
+
+        int size = modificationPoints.size();
+        invokeModificationPointsTrimmer();
+        System.out.println("Single-edit variants known: " + matrix.size() + ", removed manipulations: "
+                + numberOfManipulations + ", removed ingredients: " + numberOfIngredients
+                + ", removed modification points: " + (size - modificationPoints.size()));
+        System.out.println("Compilability matrix computation is finished!");
+    }
+
+    /**
+     * Makes the single-edit variant in the calling thread, as the ASTs are
+     * not thread-safe, and compiles it in the executor unless the matrix
+     * already knows whether it compiles.
+     */
+    Future<Boolean> submitCompilabilityCheck(ExecutorService executor, final CompilabilityMatrix matrix,
+            ModificationPoint mp, String manipName, Statement ingredStatement) throws JMException {
+        Map<String, ASTRewrite> astRewriters = new HashMap<String, ASTRewrite>();
+        manipulateOneModificationPoint(mp, manipName, ingredStatement, astRewriters);
+        final Map<String, String> javaSources = getModifiedJavaSources(astRewriters);
+        final String sourceFilePath = mp.getSourceFilePath();
+        final String content = javaSources.get(sourceFilePath);
+
+        return executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                Boolean isCompiled = matrix.get(sourceFilePath, content);
+                if (isCompiled == null) {
+                    isCompiled = compile(javaSources) != null;
+                    matrix.put(sourceFilePath, content, isCompiled);
+                }
+                return isCompiled;
+            }
+        });
+    }
+
+    void invokeEditBlacklistInitializer() {
+        if (editBlacklisting) {
+            editBlacklist = new EditBlacklist();
+        }
+    }
+
+    void invokePatchRendererInitializer() {
+        if (spliceRendering) {
+            patchRenderer = new PatchRenderer(sourceASTs, sourceContents);
+        }
+    }
+
+    void invokeMutantSchemaInitializer() {
+        if (!mutantSchemaCompilation) {
+            return;
+        }
+
+        System.out.println("Mutant schema compilation starts...");
+        MutantSchema schema = new MutantSchema(modificationPoints, availableManipulations, sourceContents,
+                getJavaCompilerPool());
+        // without the schema, each variant is compiled on its own
+        try {
+            if (schema.compile()) {
+                mutantSchema = schema;
+                System.out.println("Number of edits in the mutant schema: " + schema.getNumberOfOptions() + " at "
+                        + schema.getNumberOfPoints() + " modification points");
+            }
+        } catch (Exception e) {
+            System.out.println("Mutant schema compilation fails: " + e);
+        }
+        System.out.println("Mutant schema compilation is finished!");
+    }
+
+    void invokeTestResultCacheInitializer() {
+        if (testResultCacheSize <= 0) {
+            return;
+        }
+
+        // compile the unmodified files that can be modified, to recognize
+        // the classes of a variant that are the same as the original ones
+        Map<String, String> javaSources = new HashMap<String, String>();
+        for (ModificationPoint mp : modificationPoints) {
+            String sourceFilePath = mp.getSourceFilePath();
+            javaSources.put(sourceFilePath, sourceContents.get(sourceFilePath));
+        }
+        Map<String, JavaFileObject> originalClasses = getCompiledClassesForTestExecution(javaSources);
+        testResultCache = new TestResultCache(testResultCacheSize, originalClasses);
+    }
+
+    void invokeEvaluationCacheInitializer() {
+        if (evaluationCacheSize > 0) {
+            evaluationCache = new EvaluationCache(evaluationCacheSize);
+        }
+    }
+
     void invokeModificationPointsTrimmer() {
         int i = 0;
         while (i < modificationPoints.size()) {
@@ -623,8 +1148,36 @@ public abstract class AbstractRepairProblem extends Problem {
         return javaSources;
     }
 
+    /**
+     * As above, but splices the original sources with the given edits, which
+     * the rewriters hold, if the patch renderer can.
+     */
+    protected Map<String, String> getModifiedJavaSources(Map<String, ASTRewrite> astRewriters, List<Edit> edits)
+            throws JMException {
+        if (patchRenderer != null) {
+            Map<String, String> javaSources = patchRenderer.render(edits);
+            if (javaSources != null) {
+                return javaSources;
+            }
+        }
+        return getModifiedJavaSources(astRewriters);
+    }
+
     protected boolean manipulateOneModificationPoint(ModificationPoint mp, String manipName, Statement ingredStatement,
             Map<String, ASTRewrite> astRewriters) throws JMException {
+        return manipulateOneModificationPoint(mp, manipName, ingredStatement, astRewriters, null);
+    }
+
+    /**
+     * As above, and also records the edit in the switches of the mutant
+     * schema, if any.
+     */
+    protected boolean manipulateOneModificationPoint(ModificationPoint mp, String manipName, Statement ingredStatement,
+            Map<String, ASTRewrite> astRewriters, MutantSchema.Switches switches) throws JMException {
+        if (switches != null) {
+            switches.set(mp, manipName, ingredStatement);
+        }
+
         String sourceFilePath = mp.getSourceFilePath();
         ASTRewrite rewriter;
         if (astRewriters.containsKey(sourceFilePath)) {
@@ -641,45 +1194,931 @@ public abstract class AbstractRepairProblem extends Problem {
     }
 
     protected Map<String, JavaFileObject> getCompiledClassesForTestExecution(Map<String, String> javaSources) {
-        JavaJDKCompiler compiler = new JavaJDKCompiler(ClassLoader.getSystemClassLoader(), compilerOptions);
+        return getCompiledClassesForTestExecution(javaSources, null);
+    }
+
+    /**
+     * Compiles the given sources, or takes the classes of the files whose
+     * content has been compiled before from the compiled class cache and
+     * compiles only the others. Returns null if they do not compile, in which
+     * case the errors are added to the given list, if any.
+     */
+    protected Map<String, JavaFileObject> getCompiledClassesForTestExecution(Map<String, String> javaSources,
+            List<String> errors) {
+        if (compiledClassCache == null) {
+            return compile(javaSources, errors);
+        }
+
+        Map<String, JavaFileObject> compiledClasses = new HashMap<String, JavaFileObject>();
+        Map<String, String> uncachedSources = new HashMap<String, String>();
+        for (Entry<String, String> entry : javaSources.entrySet()) {
+            Map<String, JavaFileObject> classes = compiledClassCache.get(entry.getKey(), entry.getValue());
+            if (classes != null) {
+                compiledClasses.putAll(classes);
+            } else {
+                uncachedSources.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (!uncachedSources.isEmpty()) {
+            Map<String, JavaFileObject> classes = compile(uncachedSources, errors);
+            if (classes == null) {
+                return null;
+            }
+            compiledClassCache.put(uncachedSources, classes);
+            compiledClasses.putAll(classes);
+        }
+        return compiledClasses;
+    }
+
+    Map<String, JavaFileObject> compile(Map<String, String> javaSources) {
+        return compile(javaSources, null);
+    }
+
+    Map<String, JavaFileObject> compile(Map<String, String> javaSources, List<String> errors) {
+        if (compilationPrechecker != null && !compilationPrechecker.mayCompile(javaSources, errors)) {
+            return null;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Map<String, JavaFileObject> compiledClasses = null;
+        ICompiler compiler = newCompiler();
         try {
             boolean isCompiled = compiler.compile(javaSources);
             if (isCompiled) {
-                return compiler.getClassLoader().getCompiledClasses();
-            } else {
-                return null;
+                compiledClasses = compiler.getCompiledClasses();
+            } else if (errors != null) {
+                errors.addAll(compiler.getErrors());
             }
         } catch (Exception e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
-        return null;
+
+        synchronized (this) {
+            compilations++;
+            if (compiledClasses == null) {
+                failedCompilations++;
+            }
+            compilationTime += System.currentTimeMillis() - startTime;
+        }
+        return compiledClasses;
+    }
+
+    protected MutantSchema.Switches newSwitches() {
+        return (mutantSchema == null) ? null : mutantSchema.newSwitches();
+    }
+
+    /**
+     * Returns the test run of a variant, taking its classes from the mutant
+     * schema if possible and compiling it otherwise, or null if it does not
+     * compile.
+     */
+    protected TestRun getTestRun(Map<String, String> javaSources, MutantSchema.Switches switches) {
+        return getTestRun(javaSources, switches, null);
+    }
+
+    /**
+     * As above, and also adds the compilation errors, if any, to the given
+     * list.
+     */
+    protected TestRun getTestRun(Map<String, String> javaSources, MutantSchema.Switches switches,
+            List<String> errors) {
+        if (switches != null) {
+            Map<String, JavaFileObject> compiledClasses = null;
+            try {
+                compiledClasses = mutantSchema.getCompiledClasses(switches);
+            } catch (IOException e) {
+                System.out.println("Variant not taken from the mutant schema: " + e);
+            }
+            if (compiledClasses != null) {
+                TestRun testRun = new TestRun(compiledClasses);
+                testRun.fromMutantSchema = true;
+                return testRun;
+            }
+        }
+
+        Map<String, JavaFileObject> compiledClasses = getCompiledClassesForTestExecution(javaSources, errors);
+        return (compiledClasses == null) ? null : new TestRun(compiledClasses);
+    }
+
+    /**
+     * Returns the test runs of the given variants, compiled on the evaluation
+     * threads, with null for the variants that do not compile or whose
+     * sources are null. The compilation errors of a variant are added to the
+     * list of the same index.
+     */
+    protected List<TestRun> getTestRuns(final List<Map<String, String>> javaSources,
+            final List<MutantSchema.Switches> switches, final List<List<String>> errors) throws JMException {
+        List<Callable<TestRun>> tasks = new ArrayList<Callable<TestRun>>();
+        for (int i = 0; i < javaSources.size(); i++) {
+            final int index = i;
+            tasks.add(new Callable<TestRun>() {
+                @Override
+                public TestRun call() {
+                    if (javaSources.get(index) == null) {
+                        return null;
+                    }
+                    return getTestRun(javaSources.get(index), switches.get(index), errors.get(index));
+                }
+            });
+        }
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Calls the tasks on the evaluation threads and returns their results in
+     * order. A single task, or all of them if there is only one evaluation
+     * thread, is called in the calling thread, which may itself be an
+     * evaluation thread.
+     */
+    protected <T> List<T> invokeAll(List<Callable<T>> tasks) throws JMException {
+        List<T> results = new ArrayList<T>();
+        try {
+            if (evaluationThreads == 1 || tasks.size() <= 1) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> future : getEvaluationPool().invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            throw new JMException("Exception in evaluation: " + e.getCause());
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new JMException("Exception in evaluation: " + e);
+        }
+        return results;
+    }
+
+    protected synchronized ExecutorService getEvaluationPool() {
+        if (evaluationPool == null) {
+            evaluationPool = Executors.newFixedThreadPool(evaluationThreads);
+        }
+        return evaluationPool;
+    }
+
+    /**
+     * Returns true if the variants are to be handed over to the evaluation
+     * pipeline as soon as they are built, instead of being compiled and then
+     * tested all together.
+     */
+    protected boolean isPipelined() {
+        return pipelinedEvaluation;
+    }
+
+    /**
+     * Hands a variant over to the evaluation pipeline, in which it is
+     * compiled, its classes are delivered to its test executor and its tests
+     * are run, while the next variants are built. The given time is the time
+     * spent building it. Waits if the compile stage is saturated.
+     */
+    protected EvaluationPipeline.Ticket<PipelinedVariant> submitToPipeline(Map<String, String> javaSources,
+            MutantSchema.Switches switches, Solution solution, long rewriteTime) throws JMException {
+        try {
+            return getEvaluationPipeline().submit(new PipelinedVariant(javaSources, switches, solution),
+                    rewriteTime);
+        } catch (InterruptedException e) {
+            throw new JMException("Exception in evaluation: " + e);
+        }
+    }
+
+    /**
+     * Waits for a variant handed over to the evaluation pipeline. Its test
+     * run is null if it does not compile.
+     */
+    protected PipelinedVariant awaitPipeline(EvaluationPipeline.Ticket<PipelinedVariant> ticket)
+            throws JMException {
+        try {
+            return ticket.await();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            throw new JMException("Exception in evaluation: " + e.getCause());
+        } catch (InterruptedException e) {
+            throw new JMException("Exception in evaluation: " + e);
+        }
     }
 
-    protected ITestExecutor getTestExecutor(Map<String, JavaFileObject> compiledClasses, Set<String> executePosTests)
-            throws JMException, IOException {
+    protected synchronized EvaluationPipeline<PipelinedVariant> getEvaluationPipeline() {
+        if (evaluationPipeline == null) {
+            evaluationPipeline = new EvaluationPipeline<PipelinedVariant>("rewrite", pipelineQueueSize);
+            evaluationPipeline.addStage("compile", pipelineCompileThreads,
+                    new EvaluationPipeline.Task<PipelinedVariant>() {
+                        @Override
+                        public boolean process(PipelinedVariant variant) {
+                            variant.testRun = getTestRun(variant.javaSources, variant.switches, variant.errors);
+                            if (variant.testRun == null) {
+                                return false;
+                            }
+                            variant.testRun.solution = variant.solution;
+                            return true;
+                        }
+                    });
+            evaluationPipeline.addStage("deliver", pipelineDeliveryThreads,
+                    new EvaluationPipeline.Task<PipelinedVariant>() {
+                        @Override
+                        public boolean process(PipelinedVariant variant) {
+                            variant.testRun.samplePosTests = getSamplePositiveTests();
+                            variant.testExecutor = deliver(variant.testRun, variant.testRun.samplePosTests, false);
+                            return variant.testRun.exception == null;
+                        }
+                    });
+            evaluationPipeline.addStage("test", pipelineTestThreads,
+                    new EvaluationPipeline.Task<PipelinedVariant>() {
+                        @Override
+                        public boolean process(PipelinedVariant variant) {
+                            runTests(variant.testRun, variant.testExecutor);
+                            return true;
+                        }
+                    });
+        }
+        return evaluationPipeline;
+    }
+
+    /**
+     * Creates the test executor of a variant for the given tests, which
+     * writes its classes where the tests load them from. Returns the test
+     * executor to run, or null if the result is known from the test result
+     * cache or if an exception occurred.
+     */
+    ITestExecutor deliver(TestRun testRun, Set<String> executePosTests, boolean failFast) {
+        try {
+            testRun.testExecutor = getTestExecutor(testRun.compiledClasses, executePosTests);
+            testRun.testExecutor.setFailFast(failFast);
+            if (testRun.testExecutor instanceof MemoizedTestExecutor) {
+                ITestExecutor testExecutor = ((MemoizedTestExecutor) testRun.testExecutor).lookup();
+                if (testExecutor == null) {
+                    testRun.status = ((MemoizedTestExecutor) testRun.testExecutor).getStatus();
+                }
+                return testExecutor;
+            }
+            return testRun.testExecutor;
+        } catch (Exception e) {
+            testRun.exception = e;
+            testRun.status = false;
+            return null;
+        }
+    }
+
+    /**
+     * Runs the delivered tests of one variant as runTests() does for several,
+     * i.e., then all positive tests if it passes a sample of them. The test
+     * executor is null if the results of the sample are known from the test
+     * result cache.
+     */
+    void runTests(TestRun testRun, ITestExecutor testExecutor) {
+        if (testExecutor != null) {
+            try {
+                setStatus(testRun, testExecutor.runTests());
+            } catch (Exception e) {
+                testRun.exception = e;
+                return;
+            }
+        }
+
+        if (!needsFullRun(testRun)) {
+            return;
+        }
+
+        testExecutor = deliver(testRun, positiveTests, failFast);
+        if (testExecutor != null) {
+            try {
+                setStatus(testRun, testExecutor.runTests());
+            } catch (Exception e) {
+                testRun.exception = e;
+            }
+        }
+    }
+
+    /**
+     * Assigns the cached objective values of the canonical edits of a solution
+     * to it, if any. Returns true in that case, and the solution is then
+     * evaluated without being counted as an evaluation.
+     */
+    protected boolean lookUpEvaluation(Object canonicalEdits, Solution solution) {
+        if (evaluationCache == null) {
+            return false;
+        }
+        double objectives[] = evaluationCache.get(canonicalEdits);
+        if (objectives == null) {
+            return false;
+        }
+        for (int i = 0; i < objectives.length; i++) {
+            solution.setObjective(i, objectives[i]);
+        }
+        return true;
+    }
+
+    protected void cacheEvaluation(Object canonicalEdits, Solution solution) {
+        if (evaluationCache != null) {
+            double objectives[] = new double[solution.getNumberOfObjectives()];
+            for (int i = 0; i < objectives.length; i++) {
+                objectives[i] = solution.getObjective(i);
+            }
+            evaluationCache.put(canonicalEdits, objectives);
+        }
+    }
+
+    /**
+     * Gives a solution the objective values of one of the same set making the
+     * same edits, which has just been evaluated.
+     */
+    protected void shareEvaluation(Solution original, Solution duplicate) {
+        for (int i = 0; i < duplicate.getNumberOfObjectives(); i++) {
+            duplicate.setObjective(i, original.getObjective(i));
+        }
+        evaluationCache.hit();
+    }
+
+    public int getEvaluationCacheHits() {
+        return (evaluationCache == null) ? 0 : evaluationCache.getHits();
+    }
+
+    /**
+     * Returns true if the edit has been learned not to compile, in which case
+     * the evaluators drop it from the variant.
+     */
+    protected boolean isBlacklisted(ModificationPoint mp, String manipName, Statement ingredStatement) {
+        return editBlacklist != null && editBlacklist.contains(mp, manipName, ingredStatement);
+    }
+
+    /**
+     * Blames the edits of a variant that does not compile for its errors, and
+     * compiles alone the edits which have become suspects, to blacklist those
+     * which do not compile.
+     */
+    protected void learnFromCompilationFailure(List<Edit> edits, Map<String, ASTRewrite> astRewriters,
+            List<String> errors) throws JMException {
+        if (editBlacklist != null && errors != null && !errors.isEmpty()) {
+            for (Edit suspect : editBlacklist.learn(edits, sourceContents, astRewriters, errors)) {
+                Map<String, ASTRewrite> suspectRewriters = new HashMap<String, ASTRewrite>();
+                boolean compilesAlone = true;
+                if (manipulateOneModificationPoint(suspect.getModificationPoint(), suspect.getManipName(),
+                        suspect.getIngredStatement(), suspectRewriters)) {
+                    compilesAlone = getCompiledClassesForTestExecution(
+                            getModifiedJavaSources(suspectRewriters)) != null;
+                }
+                editBlacklist.confirm(suspect, compilesAlone);
+            }
+        }
+    }
+
+    /**
+     * A variant taken from the mutant schema is only known to compile as part
+     * of the schema, so it is compiled on its own once it passes all the
+     * tests. Returns false if it does not compile.
+     */
+    protected boolean checkCompilation(TestRun testRun, Map<String, String> javaSources) {
+        if (!testRun.fromMutantSchema || !testRun.status || testRun.exception != null) {
+            return true;
+        }
+
+        Map<String, JavaFileObject> compiledClasses = getCompiledClassesForTestExecution(javaSources);
+        if (compiledClasses == null) {
+            return false;
+        }
+        testRun.compiledClasses = compiledClasses;
+        testRun.fromMutantSchema = false;
+        return true;
+    }
+
+    protected ITestExecutor getTestExecutor(final Map<String, JavaFileObject> compiledClasses,
+            final Set<String> executePosTests) throws JMException, IOException {
+        if (testResultCache == null) {
+            return createTestExecutor(compiledClasses, executePosTests);
+        }
+
+        String key = testResultCache.getKey(compiledClasses);
+        return new MemoizedTestExecutor(executePosTests, negativeTests, testResultCache, key) {
+            @Override
+            protected ITestExecutor createTestExecutor() throws Exception {
+                return AbstractRepairProblem.this.createTestExecutor(compiledClasses, executePosTests);
+            }
+        };
+    }
+
+    protected ITestExecutor createTestExecutor(Map<String, JavaFileObject> compiledClasses,
+            Set<String> executePosTests) throws JMException, IOException {
         if (testExecutorName.equalsIgnoreCase("ExternalTestExecutor")) {
-            File binWorkingDirFile = new File(binWorkingRoot, "bin_" + (globalID++));
-            IO.saveCompiledClasses(compiledClasses, binWorkingDirFile);
+            File binWorkingDirFile = new File(binWorkingRoot, "bin_" + nextGlobalID());
+            ClassStore.Segment classSegment = saveCompiledClasses(compiledClasses, binWorkingDirFile);
+            String binWorkingDir = binWorkingDirFile.getCanonicalPath();
+            String tempPath = (executePosTests == positiveTests) ? finalTestsInfoPath : null;
+            ExternalTestExecutor testExecutor = new ExternalTestExecutor(executePosTests, negativeTests, tempPath,
+                    binJavaDir, binTestDir, dependences, binWorkingDir, externalProjRoot, jvmPath, waitTime);
+            testExecutor.setClassSegment(classSegment);
+            testExecutor.setTestStatistics(testStatistics);
+            testExecutor.setTestOrdering(testOrdering);
+            testExecutor.setTestTimeouts(testTimeouts, totalTestTimeout);
+            return testExecutor;
+
+        } else if (testExecutorName.equalsIgnoreCase("PooledTestExecutor")) {
+            File binWorkingDirFile = new File(binWorkingRoot, "bin_" + nextGlobalID());
+            ClassStore.Segment classSegment = saveCompiledClasses(compiledClasses, binWorkingDirFile);
             String binWorkingDir = binWorkingDirFile.getCanonicalPath();
             String tempPath = (executePosTests == positiveTests) ? finalTestsInfoPath : null;
-            return new ExternalTestExecutor(executePosTests, negativeTests, tempPath, binJavaDir, binTestDir,
-                    dependences, binWorkingDir, externalProjRoot, jvmPath, waitTime);
+            PooledTestExecutor testExecutor = new PooledTestExecutor(executePosTests, negativeTests, tempPath,
+                    binWorkingDir, getTestRunnerPool(), waitTime);
+            testExecutor.setClassSegment(classSegment);
+            testExecutor.setTestStatistics(testStatistics);
+            testExecutor.setTestOrdering(testOrdering);
+            testExecutor.setTestTimeouts(testTimeouts, totalTestTimeout);
+            return testExecutor;
+
+        } else if (testExecutorName.equalsIgnoreCase("ShardedTestExecutor")) {
+            File binWorkingDirFile = new File(binWorkingRoot, "bin_" + nextGlobalID());
+            ClassStore.Segment classSegment = saveCompiledClasses(compiledClasses, binWorkingDirFile);
+            String binWorkingDir = binWorkingDirFile.getCanonicalPath();
+            ShardedTestExecutor testExecutor = new ShardedTestExecutor(executePosTests, negativeTests, binJavaDir,
+                    binTestDir, dependences, binWorkingDir, externalProjRoot, jvmPath, waitTime, testShards,
+                    testStatistics);
+            testExecutor.setClassSegment(classSegment);
+            testExecutor.setTestOrdering(testOrdering);
+            testExecutor.setTestTimeouts(testTimeouts, totalTestTimeout);
+            return testExecutor;
 
         } else if (testExecutorName.equalsIgnoreCase("InternalTestExecutor")) {
-            CustomURLClassLoader urlClassLoader = new CustomURLClassLoader(progURLs, compiledClasses);
-            return new InternalTestExecutor(executePosTests, negativeTests, urlClassLoader, waitTime);
+            URLClassLoader urlClassLoader = null;
+            if (layeredClassLoading) {
+                urlClassLoader = getLayeredClassLoaders().getVariantClassLoader(compiledClasses);
+            }
+            if (urlClassLoader == null) {
+                urlClassLoader = new CustomURLClassLoader(progURLs, compiledClasses);
+            }
+            InternalTestExecutor testExecutor = new InternalTestExecutor(executePosTests, negativeTests,
+                    urlClassLoader, getTestWorkerPool(), waitTime);
+            testExecutor.setTestStatistics(testStatistics);
+            testExecutor.setTestOrdering(testOrdering);
+            testExecutor.setTestTimeouts(testTimeouts, totalTestTimeout);
+            return testExecutor;
         } else {
             Configuration.logger_.severe("test executor name '" + testExecutorName + "' not found ");
-            throw new JMException("Exception in getTestExecutor()");
+            throw new JMException("Exception in createTestExecutor()");
+        }
+    }
+
+    /**
+     * Evaluates the solutions together, which allows the tests of the
+     * variants to be run in batches. By default, they are evaluated one by
+     * one.
+     */
+    public void evaluate(SolutionSet solutionSet) throws JMException {
+        for (int i = 0; i < solutionSet.size(); i++) {
+            evaluate(solutionSet.get(i));
+        }
+    }
+
+    /**
+     * Runs the tests of the given variants: first the sampled positive tests
+     * and the negative tests, and then, for the variants that pass them, all
+     * positive tests. The variants not run in batches are run on the
+     * evaluation threads.
+     */
+    protected void runTests(List<TestRun> testRuns) throws JMException {
+        List<ITestExecutor> testExecutors = new ArrayList<ITestExecutor>();
+        for (TestRun testRun : testRuns) {
+            testRun.samplePosTests = getSamplePositiveTests();
+            try {
+                testRun.testExecutor = getTestExecutor(testRun.compiledClasses, testRun.samplePosTests);
+            } catch (JMException | IOException e) {
+                testRun.exception = e;
+            }
+            testExecutors.add(testRun.testExecutor);
+        }
+        runTestExecutors(testRuns, testExecutors);
+
+        List<TestRun> fullRuns = new ArrayList<TestRun>();
+        testExecutors = new ArrayList<ITestExecutor>();
+        for (TestRun testRun : testRuns) {
+            if (needsFullRun(testRun)) {
+                try {
+                    testRun.testExecutor = getTestExecutor(testRun.compiledClasses, positiveTests);
+                    testRun.testExecutor.setFailFast(failFast);
+                } catch (JMException | IOException e) {
+                    testRun.exception = e;
+                    testRun.status = false;
+                }
+                fullRuns.add(testRun);
+                testExecutors.add(testRun.testExecutor);
+            }
+        }
+        runTestExecutors(fullRuns, testExecutors);
+    }
+
+    /**
+     * Returns true if a variant that has run its sampled positive tests, if
+     * any, must run all of them: if it passes the sample, or with racing,
+     * unless it certainly cannot be non-dominated in the population.
+     */
+    boolean needsFullRun(TestRun testRun) {
+        if (testRun.exception != null || testRun.samplePosTests == positiveTests) {
+            return false;
+        }
+        if (testRun.status) {
+            return true;
+        }
+        if (!racing || testRun.testExecutor.isExceptional()) {
+            return false;
+        }
+        if (isPromising(testRun)) {
+            return true;
+        }
+        testRun.isCut = true;
+        synchronized (this) {
+            racingCuts++;
         }
+        return false;
     }
 
+    /**
+     * With racing, returns false if the variant of the test run, which fails
+     * some of its first tests, certainly cannot be non-dominated in the
+     * population, in which case its remaining positive tests are not run and
+     * its objective values are pessimistic estimates from its first tests. By
+     * default, all variants are promising.
+     */
+    protected boolean isPromising(TestRun testRun) {
+        return true;
+    }
+
+    /**
+     * Returns the Hoeffding bound on the difference between the failure rate
+     * of a variant on a random sample of the given number of positive tests
+     * and on all of them, which holds with the racing confidence.
+     */
+    protected double getRacingBound(int sampleSize) {
+        if (sampleSize == 0) {
+            return 1;
+        }
+        return Math.sqrt(Math.log(1 / (1 - racingConfidence)) / (2 * sampleSize));
+    }
+
+    /**
+     * Sets the population against which the variants race, which the
+     * algorithms update after each replacement.
+     */
+    public synchronized void setRacingPopulation(SolutionSet population) {
+        racingPopulation = new double[population.size()][];
+        for (int i = 0; i < population.size(); i++) {
+            Solution solution = population.get(i);
+            racingPopulation[i] = new double[solution.getNumberOfObjectives()];
+            for (int j = 0; j < racingPopulation[i].length; j++) {
+                racingPopulation[i][j] = solution.getObjective(j);
+            }
+        }
+    }
+
+    /**
+     * Returns true if some solution of the racing population dominates the
+     * given objective values.
+     */
+    protected synchronized boolean isDominatedInRacingPopulation(double objectives[]) {
+        if (racingPopulation == null) {
+            return false;
+        }
+        for (double other[] : racingPopulation) {
+            boolean better = false;
+            boolean worse = false;
+            for (int i = 0; i < objectives.length; i++) {
+                if (other[i] < objectives[i]) {
+                    better = true;
+                } else if (other[i] > objectives[i]) {
+                    worse = true;
+                }
+            }
+            if (better && !worse) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void runTestExecutors(List<TestRun> testRuns, List<ITestExecutor> testExecutors) throws JMException {
+        List<Integer> batchIndices = new ArrayList<Integer>();
+        List<ExternalTestExecutor> batch = new ArrayList<ExternalTestExecutor>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (int i = 0; i < testRuns.size(); i++) {
+            TestRun testRun = testRuns.get(i);
+            ITestExecutor testExecutor = testExecutors.get(i);
+            if (testRun.exception != null) {
+                continue;
+            }
+
+            try {
+                if (testExecutor instanceof MemoizedTestExecutor) {
+                    testExecutor = ((MemoizedTestExecutor) testExecutor).lookup();
+                    if (testExecutor == null) {
+                        testRun.status = ((MemoizedTestExecutor) testRun.testExecutor).getStatus();
+                        continue;
+                    }
+                }
+
+                if (testBatchSize > 1 && testExecutor.getClass() == ExternalTestExecutor.class) {
+                    batchIndices.add(i);
+                    batch.add((ExternalTestExecutor) testExecutor);
+                } else {
+                    tasks.add(newTestTask(testRun, testExecutor));
+                }
+            } catch (Exception e) {
+                testRun.exception = e;
+            }
+        }
+        invokeAll(tasks);
+
+        for (int from = 0; from < batch.size(); from += testBatchSize) {
+            int to = Math.min(from + testBatchSize, batch.size());
+            try {
+                boolean statuses[] = getBatchTestExecutor().runTests(batch.subList(from, to));
+                for (int j = from; j < to; j++) {
+                    setStatus(testRuns.get(batchIndices.get(j)), statuses[j - from]);
+                }
+            } catch (IOException | InterruptedException e) {
+                for (int j = from; j < to; j++) {
+                    testRuns.get(batchIndices.get(j)).exception = e;
+                }
+            }
+        }
+    }
+
+    Callable<Void> newTestTask(final TestRun testRun, final ITestExecutor testExecutor) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    setStatus(testRun, testExecutor.runTests());
+                } catch (Exception e) {
+                    testRun.exception = e;
+                }
+                return null;
+            }
+        };
+    }
+
+    void setStatus(TestRun testRun, boolean status) {
+        if (testRun.testExecutor instanceof MemoizedTestExecutor) {
+            status = ((MemoizedTestExecutor) testRun.testExecutor).complete(status);
+        }
+        testRun.status = status;
+    }
+
+    protected synchronized BatchTestExecutor getBatchTestExecutor() {
+        if (batchTestExecutor == null) {
+            batchTestExecutor = new BatchTestExecutor(binJavaDir, binTestDir, dependences, externalProjRoot,
+                    jvmPath, binWorkingRoot);
+        }
+        return batchTestExecutor;
+    }
+
+    /**
+     * The test execution of one variant. After runTests(), the test executor
+     * holds the results of the last run, unless an exception occurred. The
+     * solution of the variant, if given, is used to race it, and the run is
+     * cut if racing skipped its remaining positive tests.
+     */
+    protected static class TestRun {
+
+        public Map<String, JavaFileObject> compiledClasses;
+        public Solution solution;
+        public Set<String> samplePosTests;
+        public ITestExecutor testExecutor;
+        public boolean status;
+        public Exception exception;
+        public boolean fromMutantSchema;
+        public boolean isCut;
+
+        public TestRun(Map<String, JavaFileObject> compiledClasses) {
+            this.compiledClasses = compiledClasses;
+        }
+    }
+
+    /**
+     * A variant going through the evaluation pipeline. Its test run is null
+     * if it does not compile, in which case its errors are given.
+     */
+    protected static class PipelinedVariant {
+
+        public final Map<String, String> javaSources;
+        public final MutantSchema.Switches switches;
+        public final Solution solution;
+        public final List<String> errors;
+        public TestRun testRun;
+        ITestExecutor testExecutor;
+
+        public PipelinedVariant(Map<String, String> javaSources, MutantSchema.Switches switches,
+                Solution solution) {
+            this.javaSources = javaSources;
+            this.switches = switches;
+            this.solution = solution;
+            this.errors = new ArrayList<String>();
+        }
+    }
+
+    /**
+     * Writes the classes of a variant to a segment of the class store, if
+     * any and if there is room in it, and otherwise to the given directory,
+     * in which case null is returned.
+     */
+    ClassStore.Segment saveCompiledClasses(Map<String, JavaFileObject> compiledClasses, File binWorkingDirFile)
+            throws IOException {
+        if (classStoreSize > 0) {
+            ClassStore.Segment classSegment = getClassStore().write(compiledClasses);
+            if (classSegment != null) {
+                return classSegment;
+            }
+        }
+        IO.saveCompiledClasses(compiledClasses, binWorkingDirFile);
+        return null;
+    }
+
+    protected synchronized ClassStore getClassStore() throws IOException {
+        if (classStore == null) {
+            classStore = new ClassStore(new File(binWorkingRoot, "classes.store"), classStoreSize * 1024 * 1024);
+        }
+        return classStore;
+    }
+
+    protected synchronized TestRunnerPool getTestRunnerPool() throws IOException {
+        if (testRunnerPool == null) {
+            // the runners keep the classes that are not dirty loaded
+            File dirtyClassesFile = new File(binWorkingRoot, "dirty_classes");
+            FileUtils.writeLines(dirtyClassesFile, "UTF-8", getDirtyClasses());
+            testRunnerPool = new TestRunnerPool(binJavaDir, binTestDir, dependences, externalProjRoot, jvmPath,
+                    testRunnerPoolSize, maxRunsPerRunner);
+            testRunnerPool.setDirtyClassesFile(dirtyClassesFile.getCanonicalPath());
+        }
+        return testRunnerPool;
+    }
+
+    protected ICompiler newCompiler() {
+        if (compilerName.equalsIgnoreCase("JavaECJCompiler")) {
+            return new JavaECJCompiler(getECJNameEnvironment(), compilerOptions);
+        } else {
+            return getJavaCompilerPool().newCompiler(ClassLoader.getSystemClassLoader());
+        }
+    }
+
+    protected synchronized ECJNameEnvironment getECJNameEnvironment() {
+        if (ecjNameEnvironment == null) {
+            List<String> classPath = getBootClassPath();
+            classPath.add(binJavaDir);
+            if (dependences != null) {
+                classPath.addAll(dependences);
+            }
+            ecjNameEnvironment = new ECJNameEnvironment(classPath);
+        }
+        return ecjNameEnvironment;
+    }
+
+    /**
+     * Returns the jars of the runtime library of the JVM running the tests,
+     * which the Eclipse compiler needs on its class path (only JVMs with an
+     * rt.jar, i.e., up to Java 8, are supported).
+     */
+    List<String> getBootClassPath() {
+        List<String> bootClassPath = new ArrayList<String>();
+        File javaHome = new File(jvmPath).getAbsoluteFile().getParentFile().getParentFile();
+        File libDirs[] = {new File(javaHome, "lib"), new File(javaHome, "jre/lib")};
+        for (File libDir : libDirs) {
+            if (new File(libDir, "rt.jar").exists()) {
+                for (File jar : libDir.listFiles()) {
+                    if (jar.getName().endsWith(".jar")) {
+                        bootClassPath.add(jar.getPath());
+                    }
+                }
+                break;
+            }
+        }
+        return bootClassPath;
+    }
+
+    /**
+     * Returns the patcher of the original class files, or null if the
+     * variants have always to be compiled.
+     */
+    protected synchronized BytecodePatcher getBytecodePatcher() {
+        if (bytecodePatcher == null && bytecodePatching) {
+            bytecodePatcher = new BytecodePatcher(binJavaDir, sourceContents, progURLs);
+        }
+        return bytecodePatcher;
+    }
+
+    protected synchronized JavaCompilerPool getJavaCompilerPool() {
+        if (javaCompilerPool == null) {
+            javaCompilerPool = new JavaCompilerPool(compilerOptions, compilerPoolSize);
+        }
+        return javaCompilerPool;
+    }
+
+    protected synchronized TestWorkerPool getTestWorkerPool() {
+        if (testWorkerPool == null) {
+            testWorkerPool = new TestWorkerPool(testWorkerPoolSize);
+        }
+        return testWorkerPool;
+    }
+
+    protected synchronized LayeredClassLoaders getLayeredClassLoaders() throws IOException {
+        if (layeredClassLoaders == null) {
+            layeredClassLoaders = new LayeredClassLoaders(binJavaDir, binTestDir, dependences, getDirtyClasses());
+        }
+        return layeredClassLoaders;
+    }
+
+    /**
+     * Returns the classes that may differ between the variants, or depend on
+     * such classes or on mutable static state, which the test executors
+     * reload for every variant while they keep the others loaded.
+     */
+    protected synchronized Set<String> getDirtyClasses() throws IOException {
+        if (dirtyClasses == null) {
+            Set<String> sourceFilePaths = new HashSet<String>();
+            for (ModificationPoint mp : modificationPoints) {
+                sourceFilePaths.add(mp.getSourceFilePath());
+            }
+            dirtyClasses = LayeredClassLoaders.computeDirtyClasses(binJavaDir, binTestDir, sourceFilePaths,
+                    srcJavaDir);
+            if (mutantSchema != null) {
+                dirtyClasses.add(MutantSchema.SWITCHES_CLASS_NAME);
+            }
+            System.out.println("Number of classes reloaded per variant: " + dirtyClasses.size());
+        }
+        return dirtyClasses;
+    }
+
+    public void releaseResources() {
+        if (compilationPrechecker != null) {
+            System.out.println("Compilation precheck: " + compilationPrechecker.getChecks() + " checks in "
+                    + compilationPrechecker.getCheckTime() + " ms, " + compilationPrechecker.getRejections()
+                    + " rejected; compilation: " + compilations + " compilations in " + compilationTime + " ms, "
+                    + failedCompilations + " failed");
+        }
+        if (editBlacklist != null) {
+            System.out.println("Edit blacklist: " + editBlacklist.size() + " edits learned from "
+                    + editBlacklist.getFailures() + " failed compilations, " + editBlacklist.getHits() + " hits in "
+                    + editBlacklist.getChecks() + " checks");
+        }
+        if (evaluationCache != null) {
+            System.out.println("Evaluation cache: " + evaluationCache.getHits() + " solutions not evaluated again, "
+                    + evaluationCache.size() + " edit sets cached");
+        }
+        if (racing) {
+            System.out.println("Racing: " + racingCuts + " variants cut short after their first "
+                    + racingBatchSize + " positive tests");
+        }
+        if (evaluationPool != null) {
+            evaluationPool.shutdown();
+        }
+        if (evaluationPipeline != null) {
+            System.out.println("Evaluation pipeline, after " + evaluationPipeline.getElapsedTime() + " ms:");
+            for (EvaluationPipeline<PipelinedVariant>.StageStatistics statistics : evaluationPipeline
+                    .getStageStatistics()) {
+                System.out.println("    " + statistics);
+            }
+            evaluationPipeline.shutdown();
+        }
+        if (testRunnerPool != null) {
+            testRunnerPool.shutdown();
+        }
+        if (testWorkerPool != null) {
+            testWorkerPool.shutdown();
+        }
+        if (layeredClassLoaders != null) {
+            layeredClassLoaders.close();
+        }
+        if (javaCompilerPool != null) {
+            javaCompilerPool.shutdown();
+        }
+        if (ecjNameEnvironment != null) {
+            ecjNameEnvironment.close();
+        }
+        if (bytecodePatcher != null) {
+            bytecodePatcher.close();
+        }
+        if (patchRenderer != null) {
+            System.out.println("Patch rendering: " + patchRenderer.getRenders() + " variants spliced, "
+                    + patchRenderer.getFallbacks() + " left to the rewriters");
+        }
+        if (classStore != null) {
+            System.out.println("Class store: " + classStore.getWrites() + " variants written, "
+                    + classStore.getFallbacks() + " written to directories for lack of room");
+            classStore.close();
+        }
+    }
+
+    /**
+     * Returns the positive tests run first: with racing, a random batch of
+     * them, and otherwise the percentage of them, if given.
+     */
     protected Set<String> getSamplePositiveTests() {
-        if (percentage == null || percentage == 1) {
+        if (racing && racingBatchSize >= positiveTests.size()) {
+            return positiveTests;
+        } else if (!racing && (percentage == null || percentage == 1)) {
             return positiveTests;
         } else {
-            int num = (int) (positiveTests.size() * percentage);
+            int num = racing ? racingBatchSize : (int) (positiveTests.size() * percentage);
             List<String> tempList = new ArrayList<String>(positiveTests);
             Collections.shuffle(tempList);
             Set<String> samplePositiveTests = new HashSet<String>();
@@ -722,18 +2161,30 @@ public abstract class AbstractRepairProblem extends Problem {
         return this.percentage;
     }
 
-    public void saveTestAdequatePatch(List<Integer> opList, List<Integer> locList, List<Integer> ingredList)
-            throws IOException {
+    public void saveTestAdequatePatch(List<Integer> opList, List<Integer> locList, List<Integer> ingredList,
+            int id) throws IOException {
         long estimatedTime = System.currentTimeMillis() - launchTime;
         if (patchOutputRoot != null) {
             IO.savePatch(opList, locList, ingredList, modificationPoints, availableManipulations, patchOutputRoot,
-                    globalID, evaluations, estimatedTime);
+                    id, getEvaluations(), estimatedTime);
         }
     }
 
-    public boolean addTestAdequatePatch(List<Integer> opList, List<Integer> locList, List<Integer> ingredList) {
+    public synchronized boolean addTestAdequatePatch(List<Integer> opList, List<Integer> locList, List<Integer> ingredList) {
         Patch patch = new Patch(opList, locList, ingredList, modificationPoints, availableManipulations);
-        return patches.add(patch);
+        boolean isAdded = patches.add(patch);
+        if (isAdded && firstPatchTime == 0) {
+            firstPatchTime = System.currentTimeMillis();
+        }
+        return isAdded;
+    }
+
+    /**
+     * Returns the time at which the first test-adequate patch was found, or 0
+     * if none has been found.
+     */
+    public synchronized long getFirstPatchTime() {
+        return firstPatchTime;
     }
 
     public String getSrcJavaDir() {
@@ -756,11 +2207,11 @@ public abstract class AbstractRepairProblem extends Problem {
         return modificationPoints.size();
     }
 
-    public Set<Patch> getPatches() {
+    public synchronized Set<Patch> getPatches() {
         return this.patches;
     }
 
-    public void clearPatches() {
+    public synchronized void clearPatches() {
         patches.clear();
     }
 
@@ -772,14 +2223,22 @@ public abstract class AbstractRepairProblem extends Problem {
         this.binWorkingRoot = binWorkingRoot;
     }
 
-    public static void resetGlobalID(int id) {
+    public synchronized void resetGlobalID(int id) {
         globalID = id;
     }
 
-    public static void increaseGlobalID() {
+    public synchronized void increaseGlobalID() {
         globalID++;
     }
 
+    /**
+     * Returns a new ID, which numbers the patches and the working
+     * directories of the variants.
+     */
+    public synchronized int nextGlobalID() {
+        return globalID++;
+    }
+
     public static void resetLaunchTime(long time) {
         launchTime = time;
     }
@@ -788,14 +2247,38 @@ public abstract class AbstractRepairProblem extends Problem {
         return launchTime;
     }
 
-    public static void resetEvaluations(int evals) {
+    public synchronized void resetEvaluations(int evals) {
         evaluations = evals;
     }
 
-    public static int getEvaluations() {
+    public synchronized void increaseEvaluations() {
+        evaluations++;
+    }
+
+    public synchronized int getEvaluations() {
         return evaluations;
     }
 
+    public int getEvaluationThreads() {
+        return evaluationThreads;
+    }
+
+    /**
+     * Returns true if the algorithms should hand whole generations to
+     * evaluate(SolutionSet) and publish their population, i.e., with test
+     * batches, several evaluation threads, the evaluation pipeline or racing,
+     * and also with the evaluation cache, whose hits they must not charge
+     * against maxEvaluations.
+     */
+    public boolean evaluatesGenerations() {
+        return testBatchSize > 1 || evaluationThreads > 1 || pipelinedEvaluation || racing
+                || evaluationCacheSize > 0;
+    }
+
+    public boolean isEvaluationCached() {
+        return evaluationCache != null;
+    }
+
     public String getBinWorkingRoot() {
         return binWorkingRoot;
     }
@@ -0,0 +1,541 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import jmetal.util.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BreakStatement;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.ContinueStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import us.msu.cse.repair.core.parser.ModificationPoint;
+import us.msu.cse.repair.core.util.Helper;
+
+/**
+ * Applies the Delete, RedirectBranch and InsertReturn manipulations directly
+ * to the original class files in binJavaDir, so that the variant does not
+ * have to be compiled. The statement of the modification point is mapped to
+ * the instructions of its lines, which requires that no other code is on
+ * these lines and that they are compiled to a single range of instructions
+ * of a single method (e.g., not to the copies of a finally block). If the
+ * mapping is ambiguous, null is returned and the variant has to be compiled
+ * from the sources.
+ *
+ * A patched variant is not checked by the compiler, so a variant that passes
+ * the tests still has to be compiled from the sources before it is reported.
+ */
+public class BytecodePatcher {
+
+    String binJavaDir;
+    Map<String, String> sourceContents;
+
+    private final URLClassLoader hierarchyLoader;
+    private final Map<String, Map<String, byte[]>> classesOfSources;
+
+    public BytecodePatcher(String binJavaDir, Map<String, String> sourceContents, URL[] progURLs) {
+        this.binJavaDir = binJavaDir;
+        this.sourceContents = sourceContents;
+
+        // only used to find the common super classes when computing the frames
+        this.hierarchyLoader = new URLClassLoader(progURLs, null);
+        this.classesOfSources = new HashMap<String, Map<String, byte[]>>();
+    }
+
+    public Map<String, JavaFileObject> delete(ModificationPoint mp) throws IOException {
+        Statement statement = mp.getStatement();
+        if (statement instanceof ConstructorInvocation || statement instanceof SuperConstructorInvocation) {
+            return null;
+        }
+
+        Location location = locate(mp);
+        if (location == null) {
+            return null;
+        }
+
+        // the code must not fall off the end of the method
+        InsnList insns = location.method.instructions;
+        if (getCodeIndex(insns, location.last.getNext()) >= insns.size()) {
+            return null;
+        }
+
+        AbstractInsnNode enclosingJump = getEnclosingJump(location);
+        if (enclosingJump != null && hasJumpStatement(statement)) {
+            return null;
+        }
+        for (AbstractInsnNode insn : location.getInstructions()) {
+            if (insn.getOpcode() >= 0 && insn != enclosingJump) {
+                insns.remove(insn);
+            }
+        }
+        removeEmptyTryCatchBlocks(location.method);
+        return write(location);
+    }
+
+    public Map<String, JavaFileObject> redirectBranch(ModificationPoint mp, boolean condition) throws IOException {
+        if (!(mp.getStatement() instanceof IfStatement)) {
+            return null;
+        }
+        IfStatement ifs = (IfStatement) mp.getStatement();
+        CompilationUnit unit = (CompilationUnit) ifs.getRoot();
+
+        Expression expression = ifs.getExpression();
+        int conditionEndLine = unit.getLineNumber(expression.getStartPosition() + expression.getLength() - 1);
+        Statement thenStatement = ifs.getThenStatement();
+        if (thenStatement instanceof Block) {
+            List<?> statements = ((Block) thenStatement).statements();
+            if (statements.isEmpty()) {
+                return null;
+            }
+            thenStatement = (Statement) statements.get(0);
+        }
+        int thenLine = unit.getLineNumber(thenStatement.getStartPosition());
+        if (thenLine <= conditionEndLine) {
+            return null;
+        }
+
+        Location location = locate(mp);
+        if (location == null) {
+            return null;
+        }
+
+        // the condition is compiled to the instructions before the first line of the then statement
+        List<AbstractInsnNode> conditionInsns = new ArrayList<AbstractInsnNode>();
+        AbstractInsnNode thenStart = null;
+        for (AbstractInsnNode insn : location.getInstructions()) {
+            if (insn instanceof LineNumberNode && ((LineNumberNode) insn).line >= thenLine) {
+                thenStart = insn;
+                break;
+            } else if (insn.getOpcode() >= 0) {
+                conditionInsns.add(insn);
+            }
+        }
+        if (thenStart == null) {
+            return null;
+        }
+
+        // the jumps of the condition go either to the then statement or to the else statement
+        InsnList insns = location.method.instructions;
+        int thenIndex = getCodeIndex(insns, thenStart);
+        LabelNode elseLabel = null;
+        int elseIndex = -1;
+        for (AbstractInsnNode insn : conditionInsns) {
+            if (insn instanceof JumpInsnNode) {
+                LabelNode target = ((JumpInsnNode) insn).label;
+                int targetIndex = getCodeIndex(insns, target);
+                if (targetIndex > thenIndex) {
+                    if (elseLabel != null && targetIndex != elseIndex) {
+                        return null;
+                    }
+                    elseLabel = target;
+                    elseIndex = targetIndex;
+                }
+            }
+        }
+        if (elseLabel == null) {
+            return null;
+        }
+
+        AbstractInsnNode last = conditionInsns.get(conditionInsns.size() - 1);
+        if (!condition) {
+            insns.insert(last, new JumpInsnNode(Opcodes.GOTO, elseLabel));
+        }
+        for (AbstractInsnNode insn : conditionInsns) {
+            insns.remove(insn);
+        }
+        return write(location);
+    }
+
+    public Map<String, JavaFileObject> insertReturn(ModificationPoint mp, boolean status) throws IOException {
+        MethodDeclaration md = Helper.getMethodDeclaration(mp.getStatement());
+        if (md == null || md.isConstructor()) {
+            return null;
+        }
+
+        Location location = locate(mp);
+        if (location == null) {
+            return null;
+        }
+
+        MethodNode method = location.method;
+        AbstractInsnNode first = null;
+        for (AbstractInsnNode insn : location.getInstructions()) {
+            if (insn.getOpcode() >= 0) {
+                first = insn;
+                break;
+            }
+        }
+        // a return within a finally or synchronized block would skip the code of the block
+        for (Object obj : method.tryCatchBlocks) {
+            TryCatchBlockNode tcb = (TryCatchBlockNode) obj;
+            if (tcb.type == null && method.instructions.indexOf(tcb.start) < method.instructions.indexOf(first)
+                    && method.instructions.indexOf(tcb.end) > method.instructions.indexOf(first)) {
+                return null;
+            }
+        }
+
+        InsnList returnInsns = getReturnInstructions(Type.getReturnType(method.desc), status);
+        if (returnInsns == null) {
+            return null;
+        }
+        method.instructions.insertBefore(first, returnInsns);
+        return write(location);
+    }
+
+    /**
+     * Returns the instructions returning the same value as the return
+     * statement inserted by InsertReturnManipulation, or null if that
+     * statement would not compile.
+     */
+    InsnList getReturnInstructions(Type returnType, boolean status) {
+        InsnList insns = new InsnList();
+        switch (returnType.getSort()) {
+            case Type.VOID:
+                insns.add(new InsnNode(Opcodes.RETURN));
+                break;
+            case Type.BOOLEAN:
+                insns.add(new InsnNode(status ? Opcodes.ICONST_1 : Opcodes.ICONST_0));
+                insns.add(new InsnNode(Opcodes.IRETURN));
+                break;
+            case Type.CHAR:
+                if (!status) {
+                    return null;
+                }
+                insns.add(new InsnNode(Opcodes.ICONST_0));
+                insns.add(new InsnNode(Opcodes.IRETURN));
+                break;
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+                insns.add(new InsnNode(status ? Opcodes.ICONST_0 : Opcodes.ICONST_M1));
+                insns.add(new InsnNode(Opcodes.IRETURN));
+                break;
+            case Type.LONG:
+                insns.add(status ? new InsnNode(Opcodes.LCONST_0) : new LdcInsnNode(-1L));
+                insns.add(new InsnNode(Opcodes.LRETURN));
+                break;
+            case Type.FLOAT:
+                insns.add(status ? new InsnNode(Opcodes.FCONST_0) : new LdcInsnNode(-1f));
+                insns.add(new InsnNode(Opcodes.FRETURN));
+                break;
+            case Type.DOUBLE:
+                insns.add(status ? new InsnNode(Opcodes.DCONST_0) : new LdcInsnNode(-1d));
+                insns.add(new InsnNode(Opcodes.DRETURN));
+                break;
+            default:
+                insns.add(new InsnNode(Opcodes.ACONST_NULL));
+                insns.add(new InsnNode(Opcodes.ARETURN));
+        }
+        return insns;
+    }
+
+    /**
+     * Finds the single range of instructions the lines of the statement are
+     * compiled to, or returns null if there is not exactly one.
+     */
+    Location locate(ModificationPoint mp) throws IOException {
+        Statement statement = mp.getStatement();
+        CompilationUnit unit = (CompilationUnit) statement.getRoot();
+        String content = sourceContents.get(mp.getSourceFilePath());
+
+        int start = statement.getStartPosition();
+        int end = start + statement.getLength();
+        if (!isOwnLines(content, start, end)) {
+            return null;
+        }
+        int startLine = unit.getLineNumber(start);
+        int endLine = unit.getLineNumber(end - 1);
+
+        Map<String, byte[]> classes = getClassesOfSource(mp.getSourceFilePath(), unit);
+
+        Location location = null;
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            ClassNode classNode = new ClassNode();
+            try {
+                new ClassReader(entry.getValue()).accept(classNode, ClassReader.SKIP_FRAMES);
+            } catch (RuntimeException e) {
+                // e.g., a class file version not supported by ASM
+                return null;
+            }
+
+            for (Object obj : classNode.methods) {
+                MethodNode method = (MethodNode) obj;
+                for (Location l : findRanges(method, startLine, endLine)) {
+                    if (location != null) {
+                        return null;
+                    }
+                    location = l;
+                    location.className = entry.getKey();
+                    location.classNode = classNode;
+                }
+            }
+        }
+        return location;
+    }
+
+    List<Location> findRanges(MethodNode method, int startLine, int endLine) {
+        List<Location> locations = new ArrayList<Location>();
+        Location current = null;
+        int line = -1;
+        for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof LineNumberNode) {
+                line = ((LineNumberNode) insn).line;
+            }
+
+            if (line >= startLine && line <= endLine) {
+                if (current == null) {
+                    current = new Location(method, insn);
+                    locations.add(current);
+                }
+                current.last = insn;
+            } else if (insn.getOpcode() >= 0) {
+                current = null;
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Returns the goto at the end of the range that jumps out of it, or null
+     * if there is none. Unless the statement has a break or continue
+     * statement, this is the goto javac appends on behalf of the enclosing
+     * statement (e.g., after the then statement of an if statement with an
+     * else statement, or at the end of the body of a while loop).
+     */
+    AbstractInsnNode getEnclosingJump(Location location) {
+        AbstractInsnNode last = null;
+        for (AbstractInsnNode insn : location.getInstructions()) {
+            if (insn.getOpcode() >= 0) {
+                last = insn;
+            }
+        }
+        if (last == null || last.getOpcode() != Opcodes.GOTO) {
+            return null;
+        }
+
+        InsnList insns = location.method.instructions;
+        int target = getCodeIndex(insns, ((JumpInsnNode) last).label);
+        if (target >= insns.indexOf(location.first) && target <= insns.indexOf(last)) {
+            return null;
+        }
+        return last;
+    }
+
+    boolean hasJumpStatement(Statement statement) {
+        final boolean found[] = {false};
+        statement.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(BreakStatement node) {
+                found[0] = true;
+                return false;
+            }
+
+            @Override
+            public boolean visit(ContinueStatement node) {
+                found[0] = true;
+                return false;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Returns true if the lines of the statement contain nothing else but
+     * white space and a line comment at the end.
+     */
+    boolean isOwnLines(String content, int start, int end) {
+        int lineStart = content.lastIndexOf('\n', start - 1) + 1;
+        if (!content.substring(lineStart, start).trim().isEmpty()) {
+            return false;
+        }
+        int lineEnd = content.indexOf('\n', end);
+        if (lineEnd == -1) {
+            lineEnd = content.length();
+        }
+        String rest = content.substring(end, lineEnd).trim();
+        return rest.isEmpty() || rest.startsWith("//");
+    }
+
+    /**
+     * Returns the index of the first instruction at or after the given node.
+     */
+    int getCodeIndex(InsnList insns, AbstractInsnNode node) {
+        AbstractInsnNode insn = node;
+        while (insn != null && insn.getOpcode() < 0) {
+            insn = insn.getNext();
+        }
+        return (insn == null) ? insns.size() : insns.indexOf(insn);
+    }
+
+    void removeEmptyTryCatchBlocks(MethodNode method) {
+        Iterator<?> iter = method.tryCatchBlocks.iterator();
+        while (iter.hasNext()) {
+            TryCatchBlockNode tcb = (TryCatchBlockNode) iter.next();
+            if (getCodeIndex(method.instructions, tcb.start) >= getCodeIndex(method.instructions, tcb.end)
+                    || getCodeIndex(method.instructions, tcb.handler) >= method.instructions.size()) {
+                iter.remove();
+            }
+        }
+    }
+
+    synchronized Map<String, byte[]> getClassesOfSource(String sourceFilePath, CompilationUnit unit)
+            throws IOException {
+        Map<String, byte[]> classes = classesOfSources.get(sourceFilePath);
+        if (classes != null) {
+            return classes;
+        }
+
+        String packageName = (unit.getPackage() == null) ? "" : unit.getPackage().getName().getFullyQualifiedName();
+        final String sourceFileName = new File(sourceFilePath).getName();
+
+        classes = new HashMap<String, byte[]>();
+        File dir = new File(binJavaDir, packageName.replace('.', File.separatorChar));
+        File files[] = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(".class")) {
+                    continue;
+                }
+                byte[] bytes = FileUtils.readFileToByteArray(file);
+                final String source[] = new String[1];
+                try {
+                    new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+                        @Override
+                        public void visitSource(String source1, String debug) {
+                            source[0] = source1;
+                        }
+                    }, ClassReader.SKIP_CODE);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                if (sourceFileName.equals(source[0])) {
+                    String className = file.getName().substring(0, file.getName().length() - ".class".length());
+                    classes.put(packageName.isEmpty() ? className : packageName + "." + className, bytes);
+                }
+            }
+        }
+        classesOfSources.put(sourceFilePath, classes);
+        return classes;
+    }
+
+    Map<String, JavaFileObject> write(Location location) throws IOException {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return BytecodePatcher.this.getCommonSuperClass(type1, type2);
+            }
+        };
+
+        byte[] bytes;
+        try {
+            location.classNode.accept(cw);
+            bytes = cw.toByteArray();
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        JavaFileObjectImpl javaFileObject = new JavaFileObjectImpl(location.className, Kind.CLASS);
+        try (OutputStream out = javaFileObject.openOutputStream()) {
+            out.write(bytes);
+        }
+
+        Map<String, JavaFileObject> compiledClasses = new HashMap<String, JavaFileObject>();
+        compiledClasses.put(location.className, javaFileObject);
+        return compiledClasses;
+    }
+
+    String getCommonSuperClass(String type1, String type2) {
+        Class<?> c;
+        Class<?> d;
+        try {
+            c = Class.forName(type1.replace('/', '.'), false, hierarchyLoader);
+            d = Class.forName(type2.replace('/', '.'), false, hierarchyLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new RuntimeException(e);
+        }
+
+        if (c.isAssignableFrom(d)) {
+            return type1;
+        }
+        if (d.isAssignableFrom(c)) {
+            return type2;
+        }
+        if (c.isInterface() || d.isInterface()) {
+            return "java/lang/Object";
+        }
+        do {
+            c = c.getSuperclass();
+        } while (!c.isAssignableFrom(d));
+        return c.getName().replace('.', '/');
+    }
+
+    /**
+     * Closes the class loader of the program. A failure only leaves its jar
+     * files open until the JVM exits, so it is reported and the rest of the
+     * resources are still released.
+     */
+    public void close() {
+        try {
+            hierarchyLoader.close();
+        } catch (IOException e) {
+            Configuration.logger_.warning("BytecodePatcher.close: " + e.getMessage());
+        }
+    }
+
+    static class Location {
+
+        MethodNode method;
+        AbstractInsnNode first;
+        AbstractInsnNode last;
+
+        String className;
+        ClassNode classNode;
+
+        Location(MethodNode method, AbstractInsnNode first) {
+            this.method = method;
+            this.first = first;
+        }
+
+        List<AbstractInsnNode> getInstructions() {
+            List<AbstractInsnNode> insns = new ArrayList<AbstractInsnNode>();
+            for (AbstractInsnNode insn = first; insn != null; insn = insn.getNext()) {
+                insns.add(insn);
+                if (insn == last) {
+                    break;
+                }
+            }
+            return insns;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Whether the single-edit variants, i.e., the variants made of one edit at
+ * one modification point, compile. A variant is identified by the path and
+ * the modified content of its source file, so the results can be saved to a
+ * file and reused by the later runs on the same program: each line of the
+ * file is "[key]\t[true|false]". As the same source may compile or not
+ * depending on the compiler, its options and the class path, the first line
+ * of the file is "#fingerprint\t[fingerprint]" (see getFingerprint), and a
+ * file with another fingerprint is ignored.
+ */
+public class CompilabilityMatrix {
+
+    static final String FINGERPRINT_HEADER = "#fingerprint";
+
+    File file;
+    String fingerprint;
+
+    private final Map<String, Boolean> results;
+    private int newResults;
+
+    public CompilabilityMatrix(File file, String fingerprint) throws IOException {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.results = new HashMap<String, Boolean>();
+        this.newResults = 0;
+
+        if (file != null && file.exists()) {
+            List<String> lines = FileUtils.readLines(file, "UTF-8");
+            if (lines.isEmpty() || !lines.get(0).equals(FINGERPRINT_HEADER + "\t" + fingerprint)) {
+                System.out.println("The compilability matrix in " + file
+                        + " is ignored, as it was computed with another compiler, options or class path");
+                return;
+            }
+
+            for (String line : lines.subList(1, lines.size())) {
+                String strs[] = line.split("\t");
+                if (strs.length == 2) {
+                    results.put(strs[0], Boolean.parseBoolean(strs[1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-1 of the compiler name, the compiler options and the
+     * contents of the class path given by the "-cp" option, i.e., the binary
+     * source directory and the dependences.
+     */
+    public static String getFingerprint(String compilerName, List<String> compilerOptions) throws IOException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(compilerName.getBytes("UTF-8"));
+            for (int i = 0; i < compilerOptions.size(); i++) {
+                md.update((byte) 0);
+                md.update(compilerOptions.get(i).getBytes("UTF-8"));
+                if (compilerOptions.get(i).equals("-cp") && i + 1 < compilerOptions.size()) {
+                    for (String path : compilerOptions.get(i + 1).split(File.pathSeparator)) {
+                        updateDigest(md, new File(path));
+                    }
+                }
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void updateDigest(MessageDigest md, File root) throws IOException {
+        if (root.isFile()) {
+            md.update(FileUtils.readFileToByteArray(root));
+        } else if (root.isDirectory()) {
+            List<File> files = new ArrayList<File>(FileUtils.listFiles(root, null, true));
+            Collections.sort(files);
+            for (File f : files) {
+                md.update(root.toURI().relativize(f.toURI()).getPath().getBytes("UTF-8"));
+                md.update(FileUtils.readFileToByteArray(f));
+            }
+        }
+    }
+
+    /**
+     * Returns whether the variant compiles, or null if it is unknown.
+     */
+    public synchronized Boolean get(String sourceFilePath, String content) {
+        return results.get(CompiledClassCache.getKey(sourceFilePath, content));
+    }
+
+    public synchronized void put(String sourceFilePath, String content, boolean isCompiled) {
+        if (results.put(CompiledClassCache.getKey(sourceFilePath, content), isCompiled) == null) {
+            newResults++;
+        }
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Saves the results to the file, if any and if there are new ones.
+     */
+    public synchronized void save() throws IOException {
+        if (file == null || newResults == 0) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<String>();
+        lines.add(FINGERPRINT_HEADER + "\t" + fingerprint);
+        for (Map.Entry<String, Boolean> entry : results.entrySet()) {
+            lines.add(entry.getKey() + "\t" + entry.getValue());
+        }
+        FileUtils.writeLines(file, "UTF-8", lines);
+        newResults = 0;
+    }
+}
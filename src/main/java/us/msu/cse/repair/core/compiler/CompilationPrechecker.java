@@ -0,0 +1,161 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+
+/**
+ * Rejects the variants that certainly do not compile before they are given
+ * to the compiler. Their sources are resolved and analysed by the Eclipse
+ * compiler against the shared ECJNameEnvironment, without generating any
+ * code. Only the problems the Java language specification makes compile
+ * errors (e.g., an unresolved name, a variable that is not definitely
+ * assigned, or unreachable code) are taken as certain; a variant with any
+ * other problem is left to the compiler. The type mismatches, the argument
+ * mismatches and the unhandled exceptions are not taken as certain either,
+ * as they depend on the type inference, on which the Eclipse compiler and
+ * javac do not always agree. A source file whose
+ * original content already has such a problem is not checked.
+ */
+public class CompilationPrechecker {
+
+    static final Set<Integer> CERTAIN_PROBLEMS = new HashSet<Integer>(Arrays.asList(IProblem.UndefinedType,
+            IProblem.NotVisibleType, IProblem.UndefinedName,
+            IProblem.UninitializedLocalVariable, IProblem.RedefinedLocal, IProblem.RedefinedArgument,
+            IProblem.DuplicateFinalLocalInitialization, IProblem.FinalOuterLocalAssignment,
+            IProblem.UndefinedField, IProblem.NotVisibleField, IProblem.FinalFieldAssignment,
+            IProblem.UninitializedBlankFinalField, IProblem.UnresolvedVariable, IProblem.UndefinedMethod,
+            IProblem.NotVisibleMethod, IProblem.VoidMethodReturnsValue, IProblem.MethodReturnsVoid,
+            IProblem.ShouldReturnValue, IProblem.UndefinedConstructor,
+            IProblem.NotVisibleConstructor, IProblem.CodeCannotBeReached,
+            IProblem.InitializerMustCompleteNormally, IProblem.UnreachableCatch, IProblem.InvalidBreak,
+            IProblem.InvalidContinue, IProblem.UndefinedLabel));
+
+    private final ECJNameEnvironment nameEnvironment;
+    private final Map<String, String> settings;
+
+    private final Set<String> uncheckedFiles;
+
+    private int checks;
+    private int rejections;
+    private long checkTime;
+
+    public CompilationPrechecker(ECJNameEnvironment nameEnvironment, List<String> compilerOptions) {
+        this.nameEnvironment = nameEnvironment;
+        this.settings = JavaECJCompiler.getSettings(compilerOptions);
+        this.settings.put(CompilerOptions.OPTION_GenerateClassFiles, CompilerOptions.DO_NOT_GENERATE);
+        this.uncheckedFiles = new HashSet<String>();
+    }
+
+    /**
+     * Checks the original content of the source files, and leaves those with
+     * a certain problem unchecked from now on, as the Eclipse compiler does
+     * not agree with javac on them.
+     */
+    public void calibrate(Map<String, String> originalSources) {
+        for (Entry<String, String> entry : originalSources.entrySet()) {
+            Map<String, String> javaSources = new HashMap<String, String>();
+            javaSources.put(entry.getKey(), entry.getValue());
+            List<String> problems = getCertainProblems(javaSources);
+            if (!problems.isEmpty()) {
+                System.out.println("Compilation precheck disabled for " + entry.getKey() + ": " + problems.get(0));
+                uncheckedFiles.add(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns false if the sources certainly do not compile.
+     */
+    public boolean mayCompile(Map<String, String> javaSources) {
+        return mayCompile(javaSources, null);
+    }
+
+    /**
+     * As above, and also adds the certain problems, if any, to the given list
+     * in the same format as the errors of ICompiler.
+     */
+    public boolean mayCompile(Map<String, String> javaSources, List<String> problems) {
+        long startTime = System.nanoTime();
+
+        Map<String, String> checkedSources = new HashMap<String, String>();
+        for (Entry<String, String> entry : javaSources.entrySet()) {
+            if (!uncheckedFiles.contains(entry.getKey())) {
+                checkedSources.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> certainProblems = checkedSources.isEmpty() ? new ArrayList<String>()
+                : getCertainProblems(checkedSources);
+        boolean mayCompile = certainProblems.isEmpty();
+        if (problems != null) {
+            problems.addAll(certainProblems);
+        }
+
+        synchronized (this) {
+            checks++;
+            if (!mayCompile) {
+                rejections++;
+            }
+            checkTime += System.nanoTime() - startTime;
+        }
+        return mayCompile;
+    }
+
+    List<String> getCertainProblems(Map<String, String> javaSources) {
+        List<ICompilationUnit> units = new ArrayList<ICompilationUnit>();
+        for (Entry<String, String> entry : javaSources.entrySet()) {
+            units.add(new CompilationUnit(entry.getValue().toCharArray(), entry.getKey(), "UTF-8"));
+        }
+
+        final List<String> problems = new ArrayList<String>();
+        ICompilerRequestor requestor = new ICompilerRequestor() {
+            @Override
+            public void acceptResult(CompilationResult result) {
+                if (result.hasErrors()) {
+                    for (CategorizedProblem problem : result.getErrors()) {
+                        if (CERTAIN_PROBLEMS.contains(problem.getID())) {
+                            problems.add(String.valueOf(problem.getOriginatingFileName()) + ":"
+                                    + problem.getSourceLineNumber() + ": error: " + problem.getMessage());
+                        }
+                    }
+                }
+            }
+        };
+
+        Compiler compiler = new Compiler(nameEnvironment, DefaultErrorHandlingPolicies.proceedWithAllProblems(),
+                new CompilerOptions(settings), requestor, new DefaultProblemFactory(Locale.getDefault()));
+        compiler.compile(units.toArray(new ICompilationUnit[units.size()]));
+        return problems;
+    }
+
+    public synchronized int getChecks() {
+        return checks;
+    }
+
+    public synchronized int getRejections() {
+        return rejections;
+    }
+
+    /**
+     * Returns the time spent on the checks, in milliseconds.
+     */
+    public synchronized long getCheckTime() {
+        return checkTime / 1000000;
+    }
+}
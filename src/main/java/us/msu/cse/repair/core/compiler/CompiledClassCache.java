@@ -0,0 +1,124 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.tools.JavaFileObject;
+
+/**
+ * A cache of the classes compiled from each source file of the variants,
+ * keyed by the path and the modified content of the file, so that a variant
+ * only compiles the files whose edits have not been compiled before. The
+ * manipulations only change statements, which leaves the members of the
+ * classes as they are, so the classes compiled from a file do not depend on
+ * the edits made to the other files. The least recently used entries are
+ * evicted to keep the cached bytecode within the given size.
+ */
+public class CompiledClassCache {
+
+    long maxBytes;
+
+    private final LinkedHashMap<String, Entry> entries;
+    private long bytes;
+
+    private int hits;
+    private int misses;
+
+    public CompiledClassCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        this.bytes = 0;
+    }
+
+    /**
+     * Returns the classes compiled from the given content of the source file,
+     * or null if they are not cached.
+     */
+    public synchronized Map<String, JavaFileObject> get(String sourceFilePath, String content) {
+        Entry entry = entries.get(getKey(sourceFilePath, content));
+        if (entry != null) {
+            hits++;
+            return entry.classes;
+        } else {
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Caches the classes compiled from the given sources, grouped by the
+     * source file they were compiled from.
+     */
+    public synchronized void put(Map<String, String> javaSources, Map<String, JavaFileObject> compiledClasses) {
+        Map<String, Entry> newEntries = new HashMap<String, Entry>();
+        for (Map.Entry<String, String> entry : javaSources.entrySet()) {
+            newEntries.put(entry.getKey(), new Entry());
+        }
+
+        for (Map.Entry<String, JavaFileObject> entry : compiledClasses.entrySet()) {
+            String sourceFilePath = ((JavaFileObjectImpl) entry.getValue()).getSourceFilePath();
+            Entry newEntry = newEntries.get(sourceFilePath);
+            if (newEntry == null) {
+                // the source file of the class is unknown
+                return;
+            }
+            newEntry.classes.put(entry.getKey(), entry.getValue());
+            newEntry.size += ((JavaFileObjectImpl) entry.getValue()).getByteCode().length;
+        }
+
+        for (Map.Entry<String, Entry> entry : newEntries.entrySet()) {
+            String key = getKey(entry.getKey(), javaSources.get(entry.getKey()));
+            Entry newEntry = entry.getValue();
+            if (newEntry.size > maxBytes) {
+                continue;
+            }
+
+            Entry old = entries.put(key, newEntry);
+            if (old != null) {
+                bytes -= old.size;
+            }
+            bytes += newEntry.size;
+        }
+
+        Iterator<Entry> iter = entries.values().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            bytes -= iter.next().size;
+            iter.remove();
+        }
+    }
+
+    static String getKey(String sourceFilePath, String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(sourceFilePath).append('@');
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    static class Entry {
+
+        Map<String, JavaFileObject> classes = new HashMap<String, JavaFileObject>();
+        long size = 0;
+    }
+}
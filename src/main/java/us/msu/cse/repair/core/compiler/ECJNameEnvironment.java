@@ -0,0 +1,68 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.batch.FileSystem;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+
+/**
+ * The name environment shared by the JavaECJCompilers of a repair session.
+ * It answers the type and package lookups of the compiler from the class
+ * path, and keeps the answers, as well as the opened jars, from one
+ * compilation to the next.
+ */
+public class ECJNameEnvironment implements INameEnvironment {
+
+    private final FileSystem fileSystem;
+
+    private final Map<String, NameEnvironmentAnswer> types;
+    private final Map<String, Boolean> packages;
+
+    public ECJNameEnvironment(List<String> classPath) {
+        fileSystem = new FileSystem(classPath.toArray(new String[classPath.size()]), null, null);
+        types = new HashMap<String, NameEnvironmentAnswer>();
+        packages = new HashMap<String, Boolean>();
+    }
+
+    @Override
+    public synchronized NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+        String key = CharOperation.toString(compoundTypeName);
+        if (!types.containsKey(key)) {
+            types.put(key, fileSystem.findType(compoundTypeName));
+        }
+        return types.get(key);
+    }
+
+    @Override
+    public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+        return findType(CharOperation.arrayConcat(packageName, typeName));
+    }
+
+    @Override
+    public synchronized boolean isPackage(char[][] parentPackageName, char[] packageName) {
+        String key = CharOperation.toString(CharOperation.arrayConcat(parentPackageName, packageName));
+        Boolean isPackage = packages.get(key);
+        if (isPackage == null) {
+            isPackage = fileSystem.isPackage(parentPackageName, packageName);
+            packages.put(key, isPackage);
+        }
+        return isPackage;
+    }
+
+    /**
+     * Called by the compiler at the end of each compilation, but the
+     * environment is kept for the next one.
+     */
+    @Override
+    public void cleanup() {
+    }
+
+    public synchronized void close() {
+        fileSystem.cleanup();
+        types.clear();
+        packages.clear();
+    }
+}
@@ -0,0 +1,245 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import jmetal.util.Configuration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.TextEdit;
+import us.msu.cse.repair.core.manipulation.Edit;
+import us.msu.cse.repair.core.parser.ModificationPoint;
+
+/**
+ * The edits learned during the search not to compile. When a variant does
+ * not compile, each error is attributed to the edit whose text in the
+ * modified source file spans the line of the error, or to the only edit of
+ * the file if there is one. An edit is blacklisted once it is blamed as the
+ * only edit of a variant, and the evaluators drop the blacklisted edits from
+ * the variants before compiling them. An edit blamed by two variants with
+ * other edits may only fail together with one of them, so it is a suspect,
+ * which is compiled alone before it is blacklisted.
+ */
+public class EditBlacklist {
+
+    static final int BLAMES_TO_BLACKLIST = 2;
+
+    private final Map<Edit, Integer> blames;
+    private final Set<Edit> blacklist;
+    private final Set<Edit> suspects;
+
+    private int checks;
+    private int hits;
+    private int failures;
+    private volatile boolean isAttributionFailureReported;
+
+    public EditBlacklist() {
+        this.blames = new HashMap<Edit, Integer>();
+        this.blacklist = new HashSet<Edit>();
+        this.suspects = new HashSet<Edit>();
+    }
+
+    public synchronized boolean contains(ModificationPoint mp, String manipName, Statement ingredStatement) {
+        checks++;
+        if (blacklist.contains(new Edit(mp, manipName, ingredStatement))) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blames the edits of a variant that does not compile for its errors, in
+     * the "[path]:[line]: error: [message]" format of ICompiler, and returns
+     * the edits which have just become suspects, each of which must be
+     * compiled alone and the result passed to confirm.
+     */
+    public Set<Edit> learn(List<Edit> edits, Map<String, String> sourceContents,
+            Map<String, ASTRewrite> astRewriters, List<String> errors) {
+        Set<Edit> blamed = new LinkedHashSet<Edit>();
+        for (Entry<String, ASTRewrite> entry : astRewriters.entrySet()) {
+            String sourceFilePath = entry.getKey();
+            Set<Integer> lines = getErrorLines(sourceFilePath, errors);
+            if (lines.isEmpty()) {
+                continue;
+            }
+
+            List<Edit> fileEdits = new ArrayList<Edit>();
+            for (Edit edit : edits) {
+                if (edit.getModificationPoint().getSourceFilePath().equals(sourceFilePath)) {
+                    fileEdits.add(edit);
+                }
+            }
+
+            if (fileEdits.size() == 1) {
+                blamed.add(fileEdits.get(0));
+            } else if (fileEdits.size() > 1) {
+                blamed.addAll(attribute(fileEdits, sourceContents.get(sourceFilePath), entry.getValue(), lines));
+            }
+        }
+
+        Set<Edit> newSuspects = new LinkedHashSet<Edit>();
+        synchronized (this) {
+            failures++;
+            for (Edit edit : blamed) {
+                Integer count = blames.get(edit);
+                count = (count == null) ? 1 : count + 1;
+                blames.put(edit, count);
+                if (edits.size() == 1) {
+                    blacklist.add(edit);
+                } else if (count >= BLAMES_TO_BLACKLIST && !blacklist.contains(edit) && suspects.add(edit)) {
+                    newSuspects.add(edit);
+                }
+            }
+        }
+        return newSuspects;
+    }
+
+    /**
+     * Blacklists a suspect unless it compiles alone. A suspect which does is
+     * never blacklisted, however often it is blamed.
+     */
+    public synchronized void confirm(Edit suspect, boolean compilesAlone) {
+        if (!compilesAlone) {
+            blacklist.add(suspect);
+        }
+    }
+
+    Set<Integer> getErrorLines(String sourceFilePath, List<String> errors) {
+        Set<Integer> lines = new HashSet<Integer>();
+        String prefix = sourceFilePath + ":";
+        for (String error : errors) {
+            if (!error.startsWith(prefix)) {
+                continue;
+            }
+            int end = error.indexOf(':', prefix.length());
+            if (end < 0) {
+                continue;
+            }
+            try {
+                lines.add(Integer.parseInt(error.substring(prefix.length(), end)));
+            } catch (NumberFormatException e) {
+                // not a line number
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Applies the rewriter again to find the lines of the modified source
+     * file spanned by the text of each edit, and returns the edits spanning
+     * one of the given lines.
+     */
+    Set<Edit> attribute(List<Edit> fileEdits, String content, ASTRewrite rewriter, Set<Integer> lines) {
+        Set<Edit> blamed = new HashSet<Edit>();
+
+        Document doc = new Document(content);
+        TextEdit root = rewriter.rewriteAST(doc, null);
+        List<TextEdit> leaves = new ArrayList<TextEdit>();
+        collectLeaves(root, leaves);
+
+        // the regions are in the original content before the edits are
+        // applied, and in the modified one after
+        List<Edit> owners = new ArrayList<Edit>();
+        for (TextEdit leaf : leaves) {
+            owners.add(findOwner(fileEdits, content, leaf.getOffset(), leaf.getLength()));
+        }
+
+        try {
+            root.apply(doc, TextEdit.UPDATE_REGIONS);
+            for (int i = 0; i < leaves.size(); i++) {
+                TextEdit leaf = leaves.get(i);
+                if (owners.get(i) == null || leaf.isDeleted()) {
+                    continue;
+                }
+                int firstLine = doc.getLineOfOffset(leaf.getOffset()) + 1;
+                int lastLine = doc.getLineOfOffset(Math.max(leaf.getOffset(), leaf.getExclusiveEnd() - 1)) + 1;
+                for (int line : lines) {
+                    if (line >= firstLine && line <= lastLine) {
+                        blamed.add(owners.get(i));
+                        break;
+                    }
+                }
+            }
+        } catch (BadLocationException e) {
+            // the errors cannot be attributed to the edits
+            if (!isAttributionFailureReported) {
+                isAttributionFailureReported = true;
+                Configuration.logger_.warning("EditBlacklist.attribute: " + e.getMessage());
+            }
+            return new HashSet<Edit>();
+        }
+        return blamed;
+    }
+
+    void collectLeaves(TextEdit edit, List<TextEdit> leaves) {
+        if (edit.hasChildren()) {
+            for (TextEdit child : edit.getChildren()) {
+                collectLeaves(child, leaves);
+            }
+        } else {
+            leaves.add(edit);
+        }
+    }
+
+    /**
+     * Returns the edit whose statement overlaps most the given region of the
+     * original content, or the innermost one if several do. A region with no
+     * text is an insertion, which belongs to the statement containing it, or
+     * else to the statement it follows or precedes with only white space in
+     * between.
+     */
+    Edit findOwner(List<Edit> fileEdits, String content, int offset, int length) {
+        Edit owner = null;
+        int ownerOverlap = 0;
+        int ownerLength = Integer.MAX_VALUE;
+        for (Edit edit : fileEdits) {
+            Statement statement = edit.getModificationPoint().getStatement();
+            int start = statement.getStartPosition();
+            int end = start + statement.getLength();
+
+            int overlap;
+            if (length > 0) {
+                overlap = Math.min(end, offset + length) - Math.max(start, offset);
+            } else if (offset >= start && offset < end) {
+                overlap = 3;
+            } else if (offset >= end && content.substring(end, offset).trim().isEmpty()) {
+                overlap = 2;
+            } else if (offset < start && content.substring(offset, start).trim().isEmpty()) {
+                overlap = 1;
+            } else {
+                overlap = 0;
+            }
+
+            if (overlap > ownerOverlap || (overlap > 0 && overlap == ownerOverlap && end - start < ownerLength)) {
+                owner = edit;
+                ownerOverlap = overlap;
+                ownerLength = end - start;
+            }
+        }
+        return owner;
+    }
+
+    public synchronized int getChecks() {
+        return checks;
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    public synchronized int size() {
+        return blacklist.size();
+    }
+}
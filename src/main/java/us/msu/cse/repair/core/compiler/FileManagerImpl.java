@@ -19,7 +19,11 @@ public class FileManagerImpl extends ForwardingJavaFileManager<JavaFileManager>
     @Override
     public JavaFileObject getJavaFileForOutput(Location location, String qualifiedName, Kind kind,
             FileObject outputFile) throws IOException {
-        JavaFileObject file = new JavaFileObjectImpl(qualifiedName, kind);
+        String sourceFilePath = null;
+        if (outputFile instanceof JavaFileObjectImpl) {
+            sourceFilePath = ((JavaFileObjectImpl) outputFile).getSourceFilePath();
+        }
+        JavaFileObject file = new JavaFileObjectImpl(qualifiedName, kind, sourceFilePath);
         classLoader.add(qualifiedName, file);
         return file;
     }
@@ -0,0 +1,20 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.util.List;
+import java.util.Map;
+import javax.tools.JavaFileObject;
+
+/**
+ * A compiler backend that compiles the sources of a variant in memory. The
+ * keys of the sources are the paths of the source files, and those of the
+ * compiled classes are the binary class names. The errors are reported as
+ * "[path]:[line]: error: [message]".
+ */
+public interface ICompiler {
+
+    public boolean compile(Map<String, String> javaSources) throws Exception;
+
+    public Map<String, JavaFileObject> getCompiledClasses();
+
+    public List<String> getErrors();
+}
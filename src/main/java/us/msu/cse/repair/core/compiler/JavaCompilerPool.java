@@ -0,0 +1,133 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import jmetal.util.Configuration;
+
+/**
+ * A pool of warm file managers shared by the JavaJDKCompilers of a repair
+ * session. The class path is set once on each file manager instead of being
+ * passed as an option to every compilation, so the jars and directories on it
+ * stay open and indexed between compilations. A file manager is used by one
+ * compilation at a time, and the classes of each compilation are written to
+ * the ClassLoaderImpl of its own JavaJDKCompiler.
+ */
+public class JavaCompilerPool {
+
+    private final JavaCompiler compiler;
+
+    List<String> options;
+    List<File> classPath;
+    int poolSize;
+
+    private final LinkedList<StandardJavaFileManager> idleFileManagers;
+    private final List<StandardJavaFileManager> fileManagers;
+    private boolean isShutdown;
+
+    public JavaCompilerPool(List<String> compilerOptions, int poolSize) {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException(
+                    "Cannot find the system Java compiler. " + "Check that your class path includes tools.jar");
+        }
+
+        this.options = new ArrayList<String>();
+        this.classPath = null;
+        for (int i = 0; i < compilerOptions.size(); i++) {
+            String option = compilerOptions.get(i);
+            if ((option.equals("-cp") || option.equals("-classpath")) && i + 1 < compilerOptions.size()) {
+                classPath = new ArrayList<File>();
+                for (String path : compilerOptions.get(++i).split(File.pathSeparator)) {
+                    classPath.add(new File(path));
+                }
+            } else {
+                options.add(option);
+            }
+        }
+
+        this.poolSize = poolSize;
+        this.idleFileManagers = new LinkedList<StandardJavaFileManager>();
+        this.fileManagers = new ArrayList<StandardJavaFileManager>();
+        this.isShutdown = false;
+    }
+
+    public JavaJDKCompiler newCompiler(ClassLoader parentLoader) {
+        return new JavaJDKCompiler(parentLoader, this);
+    }
+
+    JavaCompiler getJavaCompiler() {
+        return compiler;
+    }
+
+    List<String> getOptions() {
+        return options;
+    }
+
+    synchronized StandardJavaFileManager acquire() throws IOException, InterruptedException {
+        while (idleFileManagers.isEmpty() && fileManagers.size() >= poolSize) {
+            wait();
+        }
+
+        if (!idleFileManagers.isEmpty()) {
+            return idleFileManagers.removeFirst();
+        }
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        if (classPath != null) {
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classPath);
+        }
+        fileManagers.add(fileManager);
+        return fileManager;
+    }
+
+    synchronized void release(StandardJavaFileManager fileManager) {
+        if (isShutdown) {
+            close(fileManager);
+        } else {
+            idleFileManagers.addLast(fileManager);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wraps the file manager so that the compilation cannot close it.
+     */
+    static JavaFileManager keepOpen(StandardJavaFileManager fileManager) {
+        return new ForwardingJavaFileManager<StandardJavaFileManager>(fileManager) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public synchronized void shutdown() {
+        isShutdown = true;
+        for (StandardJavaFileManager fileManager : idleFileManagers) {
+            close(fileManager);
+        }
+        idleFileManagers.clear();
+    }
+
+    /**
+     * Closes a file manager once the pool is shut down. A failure only leaves
+     * its jars open until the JVM exits, so it is reported and the other file
+     * managers are still closed.
+     */
+    void close(StandardJavaFileManager fileManager) {
+        fileManagers.remove(fileManager);
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            Configuration.logger_.warning("JavaCompilerPool.close: " + e.getMessage());
+        }
+    }
+}
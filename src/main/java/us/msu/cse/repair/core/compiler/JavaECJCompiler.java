@@ -0,0 +1,121 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.batch.CompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
+
+/**
+ * Compiles the sources of a variant with the Eclipse compiler against an
+ * ECJNameEnvironment, which is built once for the whole session, instead of
+ * setting up javac and its file manager again for every variant.
+ */
+public class JavaECJCompiler implements ICompiler {
+
+    private final ECJNameEnvironment nameEnvironment;
+    private final Map<String, String> settings;
+
+    private final Map<String, JavaFileObject> compiledClasses;
+    private final List<String> errors;
+
+    public JavaECJCompiler(ECJNameEnvironment nameEnvironment, List<String> compilerOptions) {
+        this.nameEnvironment = nameEnvironment;
+        this.settings = getSettings(compilerOptions);
+
+        compiledClasses = new HashMap<String, JavaFileObject>();
+        errors = new ArrayList<String>();
+    }
+
+    /**
+     * Returns the settings of the Eclipse compiler equivalent to the javac
+     * options of the session.
+     */
+    static Map<String, String> getSettings(List<String> compilerOptions) {
+        String sourceLevel = CompilerOptions.VERSION_1_7;
+        int index = compilerOptions.indexOf("-source");
+        if (index != -1 && index + 1 < compilerOptions.size()) {
+            sourceLevel = compilerOptions.get(index + 1);
+        }
+
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(CompilerOptions.OPTION_Source, sourceLevel);
+        settings.put(CompilerOptions.OPTION_Compliance, sourceLevel);
+        settings.put(CompilerOptions.OPTION_TargetPlatform, sourceLevel);
+        settings.put(CompilerOptions.OPTION_LineNumberAttribute, CompilerOptions.GENERATE);
+        settings.put(CompilerOptions.OPTION_SourceFileAttribute, CompilerOptions.GENERATE);
+        settings.put(CompilerOptions.OPTION_Encoding, "UTF-8");
+        return settings;
+    }
+
+    @Override
+    public synchronized boolean compile(Map<String, String> javaSources) throws Exception {
+        List<ICompilationUnit> units = new ArrayList<ICompilationUnit>();
+        for (Entry<String, String> entry : javaSources.entrySet()) {
+            units.add(new CompilationUnit(entry.getValue().toCharArray(), entry.getKey(), "UTF-8"));
+        }
+
+        final List<ClassFile> classFiles = new ArrayList<ClassFile>();
+        final List<String> sourceFilePaths = new ArrayList<String>();
+        ICompilerRequestor requestor = new ICompilerRequestor() {
+            @Override
+            public void acceptResult(CompilationResult result) {
+                if (result.hasErrors()) {
+                    for (CategorizedProblem problem : result.getErrors()) {
+                        errors.add(String.valueOf(problem.getOriginatingFileName()) + ":"
+                                + problem.getSourceLineNumber() + ": error: " + problem.getMessage());
+                    }
+                } else {
+                    for (ClassFile classFile : result.getClassFiles()) {
+                        classFiles.add(classFile);
+                        sourceFilePaths.add(String.valueOf(result.getFileName()));
+                    }
+                }
+            }
+        };
+
+        Compiler compiler = new Compiler(nameEnvironment, DefaultErrorHandlingPolicies.proceedWithAllProblems(),
+                new CompilerOptions(settings), requestor, new DefaultProblemFactory(Locale.getDefault()));
+        compiler.compile(units.toArray(new ICompilationUnit[units.size()]));
+
+        if (!errors.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < classFiles.size(); i++) {
+            ClassFile classFile = classFiles.get(i);
+            String className = new String(CharOperation.concatWith(classFile.getCompoundName(), '.'));
+            JavaFileObjectImpl javaFileObject = new JavaFileObjectImpl(className, Kind.CLASS, sourceFilePaths.get(i));
+            try (OutputStream out = javaFileObject.openOutputStream()) {
+                out.write(classFile.getBytes());
+            }
+            compiledClasses.put(className, javaFileObject);
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, JavaFileObject> getCompiledClasses() {
+        return compiledClasses;
+    }
+
+    @Override
+    public List<String> getErrors() {
+        return errors;
+    }
+}
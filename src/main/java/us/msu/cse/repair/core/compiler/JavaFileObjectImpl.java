@@ -14,14 +14,30 @@ public class JavaFileObjectImpl extends SimpleJavaFileObject {
 
     private final CharSequence source;
 
+    private final String sourceFilePath;
+
     JavaFileObjectImpl(final String name, final CharSequence source) {
         super(URI.create("memo:/" + name), Kind.SOURCE);
         this.source = source;
+        this.sourceFilePath = name;
     }
 
     JavaFileObjectImpl(final String name, final Kind kind) {
+        this(name, kind, null);
+    }
+
+    JavaFileObjectImpl(final String name, final Kind kind, final String sourceFilePath) {
         super(URI.create("memo:/" + name.replace('.', '/') + kind.extension), kind);
         source = null;
+        this.sourceFilePath = sourceFilePath;
+    }
+
+    /**
+     * Returns the path of the source file this object was created for, or
+     * that of the source file a class file was compiled from, if known.
+     */
+    public String getSourceFilePath() {
+        return sourceFilePath;
     }
 
     /**
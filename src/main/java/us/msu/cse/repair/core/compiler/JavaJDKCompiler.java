@@ -12,9 +12,10 @@ import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 
-public class JavaJDKCompiler {
+public class JavaJDKCompiler implements ICompiler {
 
     private final ClassLoaderImpl classLoader;
     private final JavaCompiler compiler;
@@ -22,6 +23,9 @@ public class JavaJDKCompiler {
     private final List<String> options;
     private DiagnosticCollector<JavaFileObject> diagnostics;
 
+    // the pool lending a file manager to each compilation, if any
+    private final JavaCompilerPool pool;
+
     public JavaJDKCompiler(ClassLoader parentLoader, List<String> options) {
         compiler = ToolProvider.getSystemJavaCompiler();
 
@@ -36,8 +40,21 @@ public class JavaJDKCompiler {
         javaFileManager = new FileManagerImpl(fileManager, classLoader);
 
         this.options = options;
+        this.pool = null;
+    }
+
+    JavaJDKCompiler(ClassLoader parentLoader, JavaCompilerPool pool) {
+        compiler = pool.getJavaCompiler();
+        classLoader = new ClassLoaderImpl(parentLoader);
+        diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+        javaFileManager = null;
+
+        this.options = pool.getOptions();
+        this.pool = pool;
     }
 
+    @Override
     public synchronized boolean compile(final Map<String, String> classes) throws Exception {
         List<JavaFileObject> sources = new ArrayList<JavaFileObject>();
         for (Entry<String, String> entry : classes.entrySet()) {
@@ -47,9 +64,20 @@ public class JavaJDKCompiler {
             JavaFileObjectImpl javaFileObject = new JavaFileObjectImpl(sourceFilePath, sourceCode);
             sources.add(javaFileObject);
         }
-        // Get a CompliationTask from the compiler and compile the sources
-        final CompilationTask task = compiler.getTask(null, javaFileManager, diagnostics, options, null, sources);
-        return task.call();
+        if (pool == null) {
+            // Get a CompliationTask from the compiler and compile the sources
+            final CompilationTask task = compiler.getTask(null, javaFileManager, diagnostics, options, null, sources);
+            return task.call();
+        }
+
+        StandardJavaFileManager fileManager = pool.acquire();
+        try {
+            FileManagerImpl fileManagerImpl = new FileManagerImpl(JavaCompilerPool.keepOpen(fileManager), classLoader);
+            final CompilationTask task = compiler.getTask(null, fileManagerImpl, diagnostics, options, null, sources);
+            return task.call();
+        } finally {
+            pool.release(fileManager);
+        }
     }
 
     public synchronized boolean compile(String sourceFilePath, String sourceCode) throws Exception {
@@ -62,11 +90,30 @@ public class JavaJDKCompiler {
         return classLoader;
     }
 
+    @Override
+    public Map<String, JavaFileObject> getCompiledClasses() {
+        return classLoader.getCompiledClasses();
+    }
+
+    @Override
     public List<String> getErrors() {
         List<String> errors = new ArrayList<String>();
+        for (Diagnostic<? extends JavaFileObject> d : getErrorDiagnostics()) {
+            if (d.getSource() instanceof JavaFileObjectImpl) {
+                errors.add(((JavaFileObjectImpl) d.getSource()).getSourceFilePath() + ":" + d.getLineNumber()
+                        + ": error: " + d.getMessage(null));
+            } else {
+                errors.add(d.toString());
+            }
+        }
+        return errors;
+    }
+
+    public List<Diagnostic<? extends JavaFileObject>> getErrorDiagnostics() {
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<Diagnostic<? extends JavaFileObject>>();
         for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
             if (d.getKind() == Kind.ERROR || d.getKind() == Kind.MANDATORY_WARNING) {
-                errors.add(d.toString());
+                errors.add(d);
             }
         }
         return errors;
@@ -0,0 +1,605 @@
+package us.msu.cse.repair.core.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BreakStatement;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.ContinueStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.LabeledStatement;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.SwitchCase;
+import org.eclipse.jdt.core.dom.ThrowStatement;
+import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import us.msu.cse.repair.core.parser.ModificationPoint;
+
+/**
+ * A meta-program in which every modification point is replaced by a chain of
+ * if statements that selects one of its edits, or the original statement, by
+ * the value of a switch, i.e., an element of the array
+ * __arja__.Switches.S. The meta-program is compiled once, and a variant
+ * whose edits are all in it is obtained by generating a Switches class with
+ * the corresponding values, without running the compiler.
+ *
+ * The edits that do not compile in the meta-program are removed from it: an
+ * error within the branch of an edit removes that edit, and the first other
+ * error of a file removes the edits of the nearest modification point before
+ * it that drop its statement, which covers uses of variables that are no
+ * longer assigned and missing return statements. A variant that can compile within the
+ * meta-program may still not compile on its own, so a variant found to pass
+ * all the tests has to be compiled before it is reported.
+ */
+public class MutantSchema {
+
+    public static final String SWITCHES_CLASS_NAME = "__arja__.Switches";
+    static final String SWITCHES = "__arja__.Switches.S";
+
+    static final int MAX_OPTIONS = 64;
+    static final int MAX_ROUNDS = 50;
+
+    JavaCompilerPool compilerPool;
+    Map<String, String> sourceContents;
+
+    Map<ModificationPoint, SchemaPoint> points;
+    Map<String, List<SchemaPoint>> filePoints;
+    int numberOfSwitches;
+
+    Map<String, JavaFileObject> schemaClasses;
+
+    public MutantSchema(List<ModificationPoint> modificationPoints, List<List<String>> availableManipulations,
+            Map<String, String> sourceContents, JavaCompilerPool compilerPool) {
+        this.sourceContents = sourceContents;
+        this.compilerPool = compilerPool;
+
+        points = new IdentityHashMap<ModificationPoint, SchemaPoint>();
+        filePoints = new HashMap<String, List<SchemaPoint>>();
+        for (int i = 0; i < modificationPoints.size(); i++) {
+            ModificationPoint mp = modificationPoints.get(i);
+            Statement statement = mp.getStatement();
+            if (!isSupported(statement) || statement.getParent() instanceof LabeledStatement) {
+                continue;
+            }
+
+            SchemaPoint point = new SchemaPoint(mp, numberOfSwitches);
+            point.addOptions(availableManipulations.get(i), MAX_OPTIONS);
+            if (point.options.isEmpty()) {
+                continue;
+            }
+
+            String sourceFilePath = mp.getSourceFilePath();
+            if (!filePoints.containsKey(sourceFilePath)) {
+                filePoints.put(sourceFilePath, new ArrayList<SchemaPoint>());
+            }
+            filePoints.get(sourceFilePath).add(point);
+            points.put(mp, point);
+            numberOfSwitches++;
+        }
+
+        for (List<SchemaPoint> list : filePoints.values()) {
+            setParents(list);
+        }
+    }
+
+    /**
+     * Compiles the meta-program, removing the edits that do not compile.
+     * Returns false if it could not be compiled at all, and throws the
+     * exceptions of the compiler itself.
+     */
+    public boolean compile() throws Exception {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Map<String, String> javaSources = new HashMap<String, String>();
+            for (String sourceFilePath : filePoints.keySet()) {
+                javaSources.put(sourceFilePath, render(sourceFilePath));
+            }
+            javaSources.put(SWITCHES_CLASS_NAME.replace('.', '/') + ".java", "package __arja__; public class Switches "
+                    + "{ public static final int[] S = new int[" + numberOfSwitches + "]; }");
+
+            JavaJDKCompiler compiler = compilerPool.newCompiler(ClassLoader.getSystemClassLoader());
+            if (compiler.compile(javaSources)) {
+                schemaClasses = new HashMap<String, JavaFileObject>(compiler.getClassLoader().getCompiledClasses());
+                schemaClasses.remove(SWITCHES_CLASS_NAME);
+                return true;
+            }
+
+            if (!removeOptions(compiler.getErrorDiagnostics())) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the edits responsible for the errors, and returns false if
+     * nothing could be removed.
+     */
+    boolean removeOptions(List<Diagnostic<? extends JavaFileObject>> errors) {
+        Map<String, Long> unattributed = new HashMap<String, Long>();
+        Set<String> attributed = new HashSet<String>();
+        Set<String> tooLarge = new HashSet<String>();
+        boolean removed = false;
+
+        for (Diagnostic<? extends JavaFileObject> d : errors) {
+            if (!(d.getSource() instanceof JavaFileObjectImpl)) {
+                continue;
+            }
+            String sourceFilePath = ((JavaFileObjectImpl) d.getSource()).getSourceFilePath();
+            List<SchemaPoint> list = filePoints.get(sourceFilePath);
+            if (list == null) {
+                continue;
+            }
+
+            if (d.getCode() != null && d.getCode().startsWith("compiler.err.limit")) {
+                tooLarge.add(sourceFilePath);
+                continue;
+            }
+
+            Option option = findOption(list, d.getLineNumber());
+            if (option != null) {
+                removed |= option.point.options.remove(option);
+                attributed.add(sourceFilePath);
+            } else if (!unattributed.containsKey(sourceFilePath)
+                    || unattributed.get(sourceFilePath) > d.getLineNumber()) {
+                unattributed.put(sourceFilePath, d.getLineNumber());
+            }
+        }
+
+        for (String sourceFilePath : tooLarge) {
+            for (SchemaPoint point : filePoints.get(sourceFilePath)) {
+                int size = point.options.size();
+                if (size > 0) {
+                    point.options.subList(size / 2, size).clear();
+                    removed = true;
+                }
+            }
+        }
+
+        // errors outside the branches may follow from the attributed ones,
+        // and later ones from the first one
+        for (Map.Entry<String, Long> entry : unattributed.entrySet()) {
+            String sourceFilePath = entry.getKey();
+            if (attributed.contains(sourceFilePath) || tooLarge.contains(sourceFilePath)) {
+                continue;
+            }
+            SchemaPoint point = findPrecedingPoint(filePoints.get(sourceFilePath), entry.getValue());
+            if (point != null) {
+                removed |= point.removeDroppingOptions();
+            } else {
+                for (SchemaPoint p : filePoints.get(sourceFilePath)) {
+                    p.options.clear();
+                }
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    Option findOption(List<SchemaPoint> list, long line) {
+        for (SchemaPoint point : list) {
+            for (Option option : point.options) {
+                if (line >= option.firstLine && line <= option.lastLine) {
+                    return option;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the point with edits whose chain of if statements ends last
+     * before or on the given line. An error within the original statement of
+     * a point cannot be caused by the edits of that point.
+     */
+    SchemaPoint findPrecedingPoint(List<SchemaPoint> list, long line) {
+        SchemaPoint preceding = null;
+        for (SchemaPoint point : list) {
+            if (point.options.isEmpty() || point.lastLine > line) {
+                continue;
+            }
+            if (preceding == null || point.lastLine > preceding.lastLine
+                    || (point.lastLine == preceding.lastLine && point.firstLine > preceding.firstLine)) {
+                preceding = point;
+            }
+        }
+        return preceding;
+    }
+
+    /**
+     * Sorts the points by their position and links each of them to the
+     * innermost point enclosing it. A point with the same statement as
+     * another one is dropped.
+     */
+    void setParents(List<SchemaPoint> list) {
+        Collections.sort(list, new Comparator<SchemaPoint>() {
+            @Override
+            public int compare(SchemaPoint o1, SchemaPoint o2) {
+                if (o1.start != o2.start) {
+                    return Integer.compare(o1.start, o2.start);
+                }
+                return Integer.compare(o2.end, o1.end);
+            }
+        });
+
+        List<SchemaPoint> stack = new ArrayList<SchemaPoint>();
+        for (int i = 0; i < list.size(); i++) {
+            SchemaPoint point = list.get(i);
+            while (!stack.isEmpty() && stack.get(stack.size() - 1).end <= point.start) {
+                stack.remove(stack.size() - 1);
+            }
+            if (!stack.isEmpty()) {
+                SchemaPoint top = stack.get(stack.size() - 1);
+                if (top.start == point.start && top.end == point.end) {
+                    points.remove(point.mp);
+                    list.remove(i--);
+                    continue;
+                }
+                point.parent = top;
+                top.children.add(point);
+            }
+            stack.add(point);
+        }
+    }
+
+    String render(String sourceFilePath) {
+        List<SchemaPoint> roots = new ArrayList<SchemaPoint>();
+        for (SchemaPoint point : filePoints.get(sourceFilePath)) {
+            if (point.parent == null) {
+                roots.add(point);
+            }
+        }
+
+        String content = sourceContents.get(sourceFilePath);
+        Renderer renderer = new Renderer();
+        renderer.render(content, 0, content.length(), roots);
+        return renderer.sb.toString();
+    }
+
+    public Switches newSwitches() {
+        return new Switches();
+    }
+
+    /**
+     * Returns the classes of the variant selected by the switches, or null if
+     * the variant cannot be obtained from the meta-program.
+     */
+    public Map<String, JavaFileObject> getCompiledClasses(Switches switches) throws IOException {
+        if (schemaClasses == null || !switches.isComplete) {
+            return null;
+        }
+
+        for (SchemaPoint point : switches.selected) {
+            for (SchemaPoint p = point.parent; p != null; p = p.parent) {
+                if (switches.values[p.index] != 0) {
+                    return null;
+                }
+            }
+        }
+
+        JavaFileObjectImpl switchesClass = new JavaFileObjectImpl(SWITCHES_CLASS_NAME, Kind.CLASS);
+        try (OutputStream out = switchesClass.openOutputStream()) {
+            out.write(getSwitchesByteCode(switches.values));
+        }
+
+        Map<String, JavaFileObject> compiledClasses = new HashMap<String, JavaFileObject>(schemaClasses);
+        compiledClasses.put(SWITCHES_CLASS_NAME, switchesClass);
+        return compiledClasses;
+    }
+
+    static byte[] getSwitchesByteCode(int values[]) {
+        String internalName = SWITCHES_CLASS_NAME.replace('.', '/');
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "S", "[I", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn(values.length);
+        mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) {
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitLdcInsn(i);
+                mv.visitLdcInsn(values[i]);
+                mv.visitInsn(Opcodes.IASTORE);
+            }
+        }
+        mv.visitFieldInsn(Opcodes.PUTSTATIC, internalName, "S", "[I");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    public int getNumberOfOptions() {
+        int count = 0;
+        for (SchemaPoint point : points.values()) {
+            count += point.options.size();
+        }
+        return count;
+    }
+
+    public int getNumberOfPoints() {
+        int count = 0;
+        for (SchemaPoint point : points.values()) {
+            if (!point.options.isEmpty()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static boolean isSupported(Statement statement) {
+        return !(statement instanceof VariableDeclarationStatement || statement instanceof TypeDeclarationStatement
+                || statement instanceof SwitchCase || statement instanceof ConstructorInvocation
+                || statement instanceof SuperConstructorInvocation);
+    }
+
+    /**
+     * A conservative approximation of whether the statement can complete
+     * normally.
+     */
+    static boolean canCompleteNormally(Statement statement) {
+        if (statement instanceof ReturnStatement || statement instanceof ThrowStatement
+                || statement instanceof BreakStatement || statement instanceof ContinueStatement) {
+            return false;
+        } else if (statement instanceof Block) {
+            List<?> statements = ((Block) statement).statements();
+            return statements.isEmpty() || canCompleteNormally((Statement) statements.get(statements.size() - 1));
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            return ifStatement.getElseStatement() == null || canCompleteNormally(ifStatement.getThenStatement())
+                    || canCompleteNormally(ifStatement.getElseStatement());
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Returns true if the statement can be made to complete abruptly without
+     * making any statement after it unreachable.
+     */
+    static boolean isLastOfBody(Statement statement) {
+        if (!(statement.getParent() instanceof Block)) {
+            return false;
+        }
+        Block block = (Block) statement.getParent();
+        List<?> statements = block.statements();
+        if (statements.get(statements.size() - 1) != statement) {
+            return false;
+        }
+        return block.getParent() instanceof IfStatement || block.getParent() instanceof WhileStatement
+                || block.getParent() instanceof ForStatement || block.getParent() instanceof EnhancedForStatement
+                || block.getParent() instanceof MethodDeclaration;
+    }
+
+    static class SchemaPoint {
+
+        ModificationPoint mp;
+        int index;
+
+        int start;
+        int end;
+
+        SchemaPoint parent;
+        List<SchemaPoint> children;
+
+        List<Option> options;
+        int firstLine;
+        int lastLine;
+
+        SchemaPoint(ModificationPoint mp, int index) {
+            this.mp = mp;
+            this.index = index;
+
+            Statement statement = mp.getStatement();
+            start = statement.getStartPosition();
+            end = start + statement.getLength();
+
+            children = new ArrayList<SchemaPoint>();
+            options = new ArrayList<Option>();
+        }
+
+        /**
+         * Adds the deletion, then the edits with each ingredient in turn,
+         * up to the given number of options.
+         */
+        void addOptions(List<String> manipNames, int maxOptions) {
+            Statement statement = mp.getStatement();
+            boolean completes = canCompleteNormally(statement);
+            // without the break, the enclosing statement may no longer complete normally
+            boolean removable = !(statement instanceof BreakStatement);
+
+            for (String manipName : manipNames) {
+                if (manipName.equalsIgnoreCase("Delete") && removable) {
+                    options.add(new Option(this, manipName, null, options.size() + 1));
+                }
+            }
+
+            List<Statement> ingredients = mp.getIngredients();
+            for (int j = 0; j < ingredients.size() && options.size() < maxOptions; j++) {
+                Statement ingredStatement = ingredients.get(j);
+                if (!isSupported(ingredStatement)) {
+                    continue;
+                }
+                boolean ingredCompletes = canCompleteNormally(ingredStatement);
+
+                for (String manipName : manipNames) {
+                    boolean supported;
+                    if (manipName.equalsIgnoreCase("Replace")) {
+                        supported = removable && (ingredCompletes || !completes || isLastOfBody(statement));
+                    } else if (manipName.equalsIgnoreCase("InsertBefore")) {
+                        supported = ingredCompletes;
+                    } else if (manipName.equalsIgnoreCase("InsertAfter")) {
+                        supported = completes && (ingredCompletes || isLastOfBody(statement));
+                    } else {
+                        supported = false;
+                    }
+
+                    if (supported && options.size() < maxOptions) {
+                        options.add(new Option(this, manipName, ingredStatement, options.size() + 1));
+                    }
+                }
+            }
+        }
+
+        Option getOption(String manipName, Statement ingredStatement) {
+            for (Option option : options) {
+                if (option.manipName.equalsIgnoreCase(manipName)
+                        && (option.manipName.equalsIgnoreCase("Delete") || option.ingredStatement == ingredStatement)) {
+                    return option;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Removes the options that do not keep the original statement, or
+         * all of them if there is none.
+         */
+        boolean removeDroppingOptions() {
+            List<Option> dropping = new ArrayList<Option>();
+            for (Option option : options) {
+                if (option.manipName.equalsIgnoreCase("Delete") || option.manipName.equalsIgnoreCase("Replace")) {
+                    dropping.add(option);
+                }
+            }
+            if (dropping.isEmpty()) {
+                dropping.addAll(options);
+            }
+            return options.removeAll(dropping);
+        }
+    }
+
+    static class Option {
+
+        SchemaPoint point;
+        String manipName;
+        Statement ingredStatement;
+        int value;
+
+        int firstLine;
+        int lastLine;
+
+        Option(SchemaPoint point, String manipName, Statement ingredStatement, int value) {
+            this.point = point;
+            this.manipName = manipName;
+            this.ingredStatement = ingredStatement;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Writes the meta-program while keeping track of the lines on which the
+     * branches of the edits are, so that compiler errors can be attributed
+     * to them.
+     */
+    static class Renderer {
+
+        StringBuilder sb = new StringBuilder();
+        int line = 1;
+
+        void append(String str) {
+            sb.append(str);
+            for (int i = 0; i < str.length(); i++) {
+                if (str.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+        }
+
+        void render(String content, int from, int to, List<SchemaPoint> points) {
+            int pos = from;
+            for (SchemaPoint point : points) {
+                append(content.substring(pos, point.start));
+                render(content, point);
+                pos = point.end;
+            }
+            append(content.substring(pos, to));
+        }
+
+        void render(String content, SchemaPoint point) {
+            if (point.options.isEmpty()) {
+                render(content, point.start, point.end, point.children);
+                return;
+            }
+
+            String original = content.substring(point.start, point.end);
+            point.firstLine = line;
+            append("{ ");
+            for (Option option : point.options) {
+                append("if (" + SWITCHES + "[" + point.index + "] == " + option.value + ") {\n");
+                option.firstLine = line;
+                if (option.manipName.equalsIgnoreCase("Replace")) {
+                    append(option.ingredStatement.toString());
+                } else if (option.manipName.equalsIgnoreCase("InsertBefore")) {
+                    append(option.ingredStatement.toString() + "\n" + original);
+                } else if (option.manipName.equalsIgnoreCase("InsertAfter")) {
+                    append(original + "\n" + option.ingredStatement.toString());
+                }
+                option.lastLine = line;
+                append("\n} else ");
+            }
+            append("{\n");
+            render(content, point.start, point.end, point.children);
+            append("\n} }");
+            point.lastLine = line;
+        }
+    }
+
+    /**
+     * The switch values of a variant, set edit by edit. The variant can only
+     * be obtained from the meta-program if all of its edits are in it and at
+     * most one edit is made at each modification point.
+     */
+    public class Switches {
+
+        int values[];
+        List<SchemaPoint> selected;
+        boolean isComplete;
+
+        Switches() {
+            values = new int[numberOfSwitches];
+            selected = new ArrayList<SchemaPoint>();
+            isComplete = true;
+        }
+
+        public void set(ModificationPoint mp, String manipName, Statement ingredStatement) {
+            SchemaPoint point = points.get(mp);
+            Option option = (point == null) ? null : point.getOption(manipName, ingredStatement);
+            if (option == null || values[point.index] != 0) {
+                isComplete = false;
+                return;
+            }
+            values[point.index] = option.value;
+            selected.add(point);
+        }
+
+        public boolean isComplete() {
+            return isComplete;
+        }
+    }
+}
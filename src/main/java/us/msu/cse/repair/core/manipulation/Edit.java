@@ -0,0 +1,49 @@
+package us.msu.cse.repair.core.manipulation;
+
+import org.eclipse.jdt.core.dom.Statement;
+import us.msu.cse.repair.core.parser.ModificationPoint;
+
+/**
+ * A manipulation at a modification point, with its ingredient unless the
+ * manipulation is a deletion. Two edits are equal if they apply the same
+ * manipulation to the same modification point with the same ingredient.
+ */
+public class Edit {
+
+    final ModificationPoint mp;
+    final String manipName;
+    final Statement ingredStatement;
+
+    public Edit(ModificationPoint mp, String manipName, Statement ingredStatement) {
+        this.mp = mp;
+        this.manipName = manipName;
+        this.ingredStatement = manipName.equalsIgnoreCase("Delete") ? null : ingredStatement;
+    }
+
+    public ModificationPoint getModificationPoint() {
+        return mp;
+    }
+
+    public String getManipName() {
+        return manipName;
+    }
+
+    public Statement getIngredStatement() {
+        return ingredStatement;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Edit)) {
+            return false;
+        }
+        Edit edit = (Edit) obj;
+        return mp == edit.mp && manipName.equals(edit.manipName) && ingredStatement == edit.ingredStatement;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * System.identityHashCode(mp) + manipName.hashCode())
+                + System.identityHashCode(ingredStatement);
+    }
+}
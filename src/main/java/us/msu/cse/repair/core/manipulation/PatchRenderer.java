@@ -0,0 +1,190 @@
+package us.msu.cse.repair.core.manipulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import jmetal.util.JMException;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * Renders the modified sources of a variant by splicing the original source
+ * content, instead of rewriting the whole AST of every modified file. The
+ * text edits the ASTRewrite of an edit makes are computed the first time the
+ * edit is rendered, and kept as splices, i.e., ranges of the original content
+ * with the text replacing them. The splices of the edits of a variant are then
+ * applied in the order of their offsets, which gives the same sources as the
+ * rewriters as long as the splices of different edits neither overlap nor
+ * touch; otherwise the variant is left to the rewriters.
+ */
+public class PatchRenderer {
+
+    Map<String, CompilationUnit> sourceASTs;
+    Map<String, String> sourceContents;
+
+    private final Map<Edit, List<Splice>> splices;
+
+    private int renders;
+    private int fallbacks;
+
+    public PatchRenderer(Map<String, CompilationUnit> sourceASTs, Map<String, String> sourceContents) {
+        this.sourceASTs = sourceASTs;
+        this.sourceContents = sourceContents;
+        this.splices = new HashMap<Edit, List<Splice>>();
+    }
+
+    /**
+     * Returns the modified sources of the files with edits, or null if the
+     * edits cannot be rendered apart from each other.
+     */
+    public Map<String, String> render(List<Edit> edits) throws JMException {
+        Map<String, List<Splice>> fileSplices = new HashMap<String, List<Splice>>();
+        Set<Edit> renderedEdits = new HashSet<Edit>();
+        for (Edit edit : edits) {
+            List<Splice> list = getSplices(edit);
+            if (list == null || !renderedEdits.add(edit)) {
+                countRender(false);
+                return null;
+            }
+
+            String sourceFilePath = edit.getModificationPoint().getSourceFilePath();
+            if (!fileSplices.containsKey(sourceFilePath)) {
+                fileSplices.put(sourceFilePath, new ArrayList<Splice>());
+            }
+            fileSplices.get(sourceFilePath).addAll(list);
+        }
+
+        Map<String, String> javaSources = new HashMap<String, String>();
+        for (Entry<String, List<Splice>> entry : fileSplices.entrySet()) {
+            String content = apply(sourceContents.get(entry.getKey()), entry.getValue());
+            if (content == null) {
+                countRender(false);
+                return null;
+            }
+            javaSources.put(entry.getKey(), content);
+        }
+        countRender(true);
+        return javaSources;
+    }
+
+    String apply(String content, List<Splice> list) {
+        Collections.sort(list, new Comparator<Splice>() {
+            @Override
+            public int compare(Splice o1, Splice o2) {
+                return Integer.compare(o1.offset, o2.offset);
+            }
+        });
+
+        StringBuilder sb = new StringBuilder(content.length() + 256);
+        int pos = 0;
+        Splice last = null;
+        for (Splice splice : list) {
+            if (last != null && last.edit != splice.edit && splice.offset <= last.offset + last.length) {
+                return null;
+            }
+            sb.append(content, pos, splice.offset).append(splice.text);
+            pos = splice.offset + splice.length;
+            last = splice;
+        }
+        sb.append(content, pos, content.length());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the splices of the edit, or null if its text edits are not
+     * only insertions, deletions and replacements.
+     */
+    List<Splice> getSplices(Edit edit) throws JMException {
+        synchronized (splices) {
+            if (splices.containsKey(edit)) {
+                return splices.get(edit);
+            }
+        }
+
+        String sourceFilePath = edit.getModificationPoint().getSourceFilePath();
+        CompilationUnit unit = sourceASTs.get(sourceFilePath);
+        ASTRewrite rewriter = ASTRewrite.create(unit.getAST());
+        ManipulationFactory.getManipulation(edit.getManipName(), edit.getModificationPoint(),
+                edit.getIngredStatement(), rewriter).manipulate();
+
+        TextEdit root = rewriter.rewriteAST(new Document(sourceContents.get(sourceFilePath)), null);
+        List<Splice> list = new ArrayList<Splice>();
+        if (!collectSplices(edit, root, list)) {
+            list = null;
+        }
+
+        synchronized (splices) {
+            splices.put(edit, list);
+        }
+        return list;
+    }
+
+    boolean collectSplices(Edit edit, TextEdit textEdit, List<Splice> list) {
+        if (textEdit instanceof MultiTextEdit) {
+            for (TextEdit child : textEdit.getChildren()) {
+                if (!collectSplices(edit, child, list)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (textEdit.hasChildren()) {
+            return false;
+        }
+
+        if (textEdit instanceof ReplaceEdit) {
+            String text = ((ReplaceEdit) textEdit).getText();
+            list.add(new Splice(edit, textEdit.getOffset(), textEdit.getLength(), text));
+        } else if (textEdit instanceof InsertEdit) {
+            list.add(new Splice(edit, textEdit.getOffset(), 0, ((InsertEdit) textEdit).getText()));
+        } else if (textEdit instanceof DeleteEdit) {
+            list.add(new Splice(edit, textEdit.getOffset(), textEdit.getLength(), ""));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    synchronized void countRender(boolean isRendered) {
+        if (isRendered) {
+            renders++;
+        } else {
+            fallbacks++;
+        }
+    }
+
+    public synchronized int getRenders() {
+        return renders;
+    }
+
+    public synchronized int getFallbacks() {
+        return fallbacks;
+    }
+
+    static class Splice {
+
+        final Edit edit;
+        final int offset;
+        final int length;
+        final String text;
+
+        Splice(Edit edit, int offset, int length, String text) {
+            this.edit = edit;
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import us.msu.cse.repair.core.util.StreamReaderThread;
+
+/**
+ * Runs the tests of a batch of variants, each given by an
+ * ExternalTestExecutor, in a single JVM, so that starting the JVM and loading
+ * the dependences is paid once per batch rather than once per variant. The
+ * result file of each variant is followed while the batch is running; a
+ * variant that crashes the JVM or exceeds its time limit is exceptional, and
+ * the batch is restarted from the first later variant whose results are not
+ * complete. A variant whose tests cannot be run at all ends its result file
+ * as failed, and the batch goes on.
+ */
+public class BatchTestExecutor {
+
+    static final int POLL_INTERVAL = 20;
+
+    String binJavaDir;
+    String binTestDir;
+    Set<String> dependences;
+
+    String externalProjRoot;
+    String jvmPath;
+
+    String binWorkingRoot;
+    int batchID;
+
+    public BatchTestExecutor(String binJavaDir, String binTestDir, Set<String> dependences,
+            String externalProjRoot, String jvmPath, String binWorkingRoot) {
+        this.binJavaDir = binJavaDir;
+        this.binTestDir = binTestDir;
+        this.dependences = dependences;
+
+        this.externalProjRoot = externalProjRoot;
+        this.jvmPath = jvmPath;
+
+        this.binWorkingRoot = binWorkingRoot;
+        this.batchID = 0;
+    }
+
+    /**
+     * Runs the tests of all the given test executors and returns their
+     * statuses, i.e., what their runTests() would have returned. The results
+     * are available from the test executors afterwards.
+     */
+    public synchronized boolean[] runTests(List<ExternalTestExecutor> testExecutors)
+            throws IOException, InterruptedException {
+        List<List<String>> tests = new ArrayList<List<String>>();
+        List<String> lines = new ArrayList<String>();
+        for (ExternalTestExecutor testExecutor : testExecutors) {
+            List<String> orderedTests = testExecutor.getOrderedTests();
+            tests.add(orderedTests);
+
+            File resultFile = testExecutor.getResultFile();
+            resultFile.delete();
+
+            String line = testExecutor.getVariant() + "\t" + resultFile.getCanonicalPath() + "\t"
+                    + testExecutor.getTestsArgument(orderedTests);
+            if (testExecutor.failFast) {
+                line += "\tFailFast";
+            }
+            lines.add(line);
+        }
+
+        boolean statuses[] = new boolean[testExecutors.size()];
+        int next = 0;
+        try {
+            while (next < testExecutors.size()) {
+                next = runBatch(testExecutors, tests, lines, next, statuses);
+            }
+        } finally {
+            for (ExternalTestExecutor testExecutor : testExecutors) {
+                testExecutor.releaseClasses();
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Runs the variants from the given index on in one JVM, and returns the
+     * index from which the batch has to be restarted.
+     */
+    int runBatch(List<ExternalTestExecutor> testExecutors, List<List<String>> tests, List<String> lines,
+            int start, boolean statuses[]) throws IOException, InterruptedException {
+        File batchFile = new File(binWorkingRoot, "batch_" + (batchID++));
+        FileUtils.writeLines(batchFile, lines.subList(start, lines.size()));
+
+        Process process = startTestProcess(batchFile);
+        StreamReaderThread streamReaderThread = new StreamReaderThread(process.getInputStream(),
+                ExternalTestExecutor.MAX_OUTPUT_LINES);
+        streamReaderThread.start();
+
+        int current = start;
+        ExternalTestExecutor testExecutor = testExecutors.get(current);
+        TestResultReader reader = new TestResultReader(testExecutor.getResultFile());
+        long deadline = System.currentTimeMillis() + testExecutor.getProcessTimeout();
+        try {
+            while (current < testExecutors.size()) {
+                reader.read();
+                if (reader.isFinished() || reader.isCorrupted()) {
+                    reader.close();
+                    statuses[current] = testExecutor.readResults(tests.get(current), testExecutor.getResultFile());
+                    if (++current < testExecutors.size()) {
+                        testExecutor = testExecutors.get(current);
+                        reader = new TestResultReader(testExecutor.getResultFile());
+                        deadline = System.currentTimeMillis() + testExecutor.getProcessTimeout();
+                    }
+                } else if (hasExited(process)) {
+                    // the last records may have been written just before the exit
+                    reader.read();
+                    if (!reader.isFinished()) {
+                        break;
+                    }
+                } else if (System.currentTimeMillis() > deadline) {
+                    break;
+                } else {
+                    Thread.sleep(POLL_INTERVAL);
+                }
+            }
+        } finally {
+            reader.close();
+            process.destroy();
+        }
+
+        process.waitFor();
+        streamReaderThread.join();
+        batchFile.delete();
+
+        if (current < testExecutors.size()) {
+            testExecutor.isExceptional = true;
+            statuses[current] = false;
+            current++;
+        }
+
+        // the results completed before the JVM was killed are kept, and the
+        // unfinished result files are deleted before the restart
+        while (current < testExecutors.size() && isFinished(testExecutors.get(current).getResultFile())) {
+            testExecutor = testExecutors.get(current);
+            statuses[current] = testExecutor.readResults(tests.get(current), testExecutor.getResultFile());
+            current++;
+        }
+        for (int i = current; i < testExecutors.size(); i++) {
+            testExecutors.get(i).getResultFile().delete();
+        }
+        return current;
+    }
+
+    boolean isFinished(File resultFile) throws IOException {
+        TestResultReader reader = new TestResultReader(resultFile);
+        try {
+            reader.read();
+            return reader.isFinished();
+        } finally {
+            reader.close();
+        }
+    }
+
+    Process startTestProcess(File batchFile) throws IOException {
+        List<String> params = new ArrayList<String>();
+        params.add(jvmPath);
+        params.add("-cp");
+
+        String cpStr = new File(externalProjRoot, "bin").getCanonicalPath();
+        if (dependences != null) {
+            for (String dp : dependences) {
+                cpStr += (File.pathSeparator + dp);
+            }
+        }
+        params.add(cpStr);
+
+        params.add("us.msu.cse.repair.external.junit.BatchTestRunner");
+        params.add(binJavaDir);
+        params.add(binTestDir);
+        params.add(batchFile.getCanonicalPath());
+
+        ProcessBuilder builder = new ProcessBuilder(params);
+        builder.redirectErrorStream(true);
+        builder.environment().put("TZ", "America/Los_Angeles");
+        return builder.start();
+    }
+
+    boolean hasExited(Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+}
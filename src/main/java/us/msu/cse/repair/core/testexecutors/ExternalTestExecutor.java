@@ -3,9 +3,13 @@ package us.msu.cse.repair.core.testexecutors;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import us.msu.cse.repair.core.util.ClassStore;
 import us.msu.cse.repair.core.util.ProcessWithTimeout;
 import us.msu.cse.repair.core.util.StreamReaderThread;
 
@@ -16,6 +20,7 @@ public class ExternalTestExecutor implements ITestExecutor {
     Set<String> dependences;
 
     String binWorkingDir;
+    ClassStore.Segment classSegment;
 
     String externalProjRoot;
 
@@ -33,8 +38,21 @@ public class ExternalTestExecutor implements ITestExecutor {
 
     Set<String> failedTests;
 
+    TestStatistics testStatistics;
+    boolean testOrdering;
+
+    boolean failFast;
+    boolean isLowerBound;
+
+    Map<String, Integer> testTimeouts;
+    int totalTestTimeout = Integer.MAX_VALUE;
+    Map<String, Long> testTimes;
+    Set<String> timedOutTests;
+
     final int MAX = 300;
 
+    static final int MAX_OUTPUT_LINES = 100;
+
     public ExternalTestExecutor(Set<String> positiveTests, Set<String> negativeTests, String finalTestsInfoPath,
             String binJavaDir, String binTestDir, Set<String> dependences, String binWorkingDir,
             String externalProjRoot, String jvmPath, int waitTime) {
@@ -58,17 +76,124 @@ public class ExternalTestExecutor implements ITestExecutor {
         this.isExceptional = false;
     }
 
+    public void setTestStatistics(TestStatistics testStatistics) {
+        this.testStatistics = testStatistics;
+    }
+
+    /**
+     * If true, the tests are run in the order given by the test statistics,
+     * i.e., the tests that most often fail in little time come first.
+     */
+    public void setTestOrdering(boolean testOrdering) {
+        this.testOrdering = testOrdering;
+    }
+
+    /**
+     * Sets the timeouts (in milliseconds) of individual tests, which are
+     * enforced by the test runner. A test that times out fails without
+     * affecting the results of the other tests.
+     */
+    public void setTestTimeouts(Map<String, Integer> testTimeouts) {
+        this.testTimeouts = testTimeouts;
+    }
+
+    /**
+     * As above, and also caps the time the runner may take for all the tests
+     * together.
+     */
+    public void setTestTimeouts(Map<String, Integer> testTimeouts, int totalTestTimeout) {
+        this.testTimeouts = testTimeouts;
+        this.totalTestTimeout = totalTestTimeout;
+    }
+
+    /**
+     * Passes the classes of the variant through a segment of the class store
+     * instead of the binWorkingDir directory, which is then only the prefix
+     * of the working files of the run.
+     */
+    public void setClassSegment(ClassStore.Segment classSegment) {
+        this.classSegment = classSegment;
+    }
+
+    /**
+     * Returns where the runner finds the classes of the variant.
+     */
+    String getVariant() {
+        return (classSegment != null) ? classSegment.getLocation() : binWorkingDir;
+    }
+
+    /**
+     * Releases the segment of the class store, if any, together with the
+     * working files of the run, once its results have been read.
+     */
+    void releaseClasses() {
+        if (classSegment != null) {
+            classSegment.release();
+            getResultFile().delete();
+            new File(binWorkingDir + "_tests").delete();
+        }
+    }
+
     @Override
     public boolean runTests() throws IOException, InterruptedException {
         // TODO Auto-generated method stub
+        try {
+            List<String> tests = getOrderedTests();
+            File resultFile = getResultFile();
+
+            Process process = startTestProcess(getTestsArgument(tests), resultFile);
+            if (!waitForTestProcess(process)) {
+                isExceptional = true;
+                return false;
+            }
+            return readResults(tests, resultFile);
+        } finally {
+            releaseClasses();
+        }
+    }
+
+    File getResultFile() {
+        return new File(binWorkingDir + "_results");
+    }
+
+    /**
+     * Reads the results of the given tests, in the order in which they were
+     * passed to the runner, from a complete result file.
+     */
+    boolean readResults(List<String> tests, File resultFile) throws IOException {
+        initResults();
+        TestResultReader reader = new TestResultReader(resultFile);
+        try {
+            List<TestResultReader.Record> records = reader.read();
+            if (!reader.isFinished() || reader.isFailed() || reader.getNumberOfTests() != tests.size()) {
+                isExceptional = true;
+                return false;
+            }
+            addResults(tests, records);
+            isLowerBound = reader.isPartial();
+        } finally {
+            reader.close();
+        }
+        return processResults();
+    }
+
+    /**
+     * Starts a JVM that runs the given tests and writes their results to the
+     * given file.
+     */
+    Process startTestProcess(String testsArg, File resultFile) throws IOException {
         List<String> params = new ArrayList<String>();
         params.add(jvmPath);
         params.add("-cp");
 
+        // the classes of a segment are loaded by the runner itself, together
+        // with the other program classes
         String cpStr = "";
-        cpStr += (binWorkingDir + File.pathSeparator);
-        cpStr += (binJavaDir + File.pathSeparator);
-        cpStr += (binTestDir + File.pathSeparator);
+        if (classSegment == null) {
+            cpStr += (binWorkingDir + File.pathSeparator);
+            cpStr += (binJavaDir + File.pathSeparator);
+            cpStr += (binTestDir + File.pathSeparator);
+        }
         cpStr += new File(externalProjRoot, "bin").getCanonicalPath();
         if (dependences != null) {
             for (String dp : dependences) {
@@ -78,18 +203,16 @@ public class ExternalTestExecutor implements ITestExecutor {
         params.add(cpStr);
 
         params.add("us.msu.cse.repair.external.junit.JUnitTestRunner");
-
-        if (finalTestsInfoPath != null && positiveTests.size() > MAX) {
-            params.add("@" + finalTestsInfoPath);
-        } else {
-            String testStrs = "";
-            for (String test : positiveTests) {
-                testStrs += (test + File.pathSeparator);
-            }
-            for (String test : negativeTests) {
-                testStrs += (test + File.pathSeparator);
-            }
-            params.add(testStrs);
+        params.add(testsArg);
+        if (failFast) {
+            params.add("-failFast");
+        }
+        params.add("-resultFile");
+        params.add(resultFile.getCanonicalPath());
+        if (classSegment != null) {
+            params.add("-variant");
+            params.add(classSegment.getLocation());
+            params.add(binJavaDir + File.pathSeparator + binTestDir);
         }
 
         ProcessBuilder builder = new ProcessBuilder(params);
@@ -98,27 +221,151 @@ public class ExternalTestExecutor implements ITestExecutor {
         builder.directory();
         builder.environment().put("TZ", "America/Los_Angeles");
 
-        Process process = builder.start();
+        // the result file must not hold the results of an earlier run yet
+        resultFile.delete();
+        return builder.start();
+    }
 
-        StreamReaderThread streamReaderThread = new StreamReaderThread(process.getInputStream());
+    /**
+     * Waits for the test JVM and returns false if it timed out or terminated
+     * abnormally. The runner discards the output of the tests, so only the
+     * last lines of whatever else is printed are kept.
+     */
+    boolean waitForTestProcess(Process process) throws InterruptedException {
+        StreamReaderThread streamReaderThread = new StreamReaderThread(process.getInputStream(), MAX_OUTPUT_LINES);
         streamReaderThread.start();
 
         ProcessWithTimeout processWithTimeout = new ProcessWithTimeout(process);
-        int exitCode = processWithTimeout.waitForProcess(waitTime);
+        int exitCode = processWithTimeout.waitForProcess(getProcessTimeout());
 
         streamReaderThread.join();
 
-        if (exitCode != 0 || streamReaderThread.isStreamExceptional()) {
-            isExceptional = true;
-            return false;
+        return exitCode == 0 && !streamReaderThread.isStreamExceptional();
+    }
+
+    String getTestsArgument(List<String> tests) throws IOException {
+        // The final tests file lists the positive tests and then the negative tests
+        boolean rewritten = failFast || testOrdering || testTimeouts != null;
+        if (!rewritten && finalTestsInfoPath != null && positiveTests.size() > MAX) {
+            return "@" + finalTestsInfoPath;
         }
 
-        List<String> output = streamReaderThread.getOutput();
+        return getTestsArgument(tests, new File(binWorkingDir + "_tests"));
+    }
 
+    /**
+     * Returns the runner argument for the given tests, which are written to
+     * the given file if there are too many of them for the command line.
+     */
+    String getTestsArgument(List<String> tests, File file) throws IOException {
+        List<String> entries = new ArrayList<String>();
+        for (String test : tests) {
+            if (testTimeouts != null && testTimeouts.containsKey(test)) {
+                entries.add(test + "=" + testTimeouts.get(test));
+            } else {
+                entries.add(test);
+            }
+        }
+
+        if (entries.size() > MAX) {
+            FileUtils.writeLines(file, entries);
+            return "@" + file.getCanonicalPath();
+        }
+
+        String testStrs = "";
+        for (String entry : entries) {
+            testStrs += (entry + File.pathSeparator);
+        }
+        return testStrs;
+    }
+
+    /**
+     * With per-test timeouts, the runner may take as long as all of them
+     * together, plus waitTime for starting up, but no longer than the total
+     * timeout, if any.
+     */
+    int getProcessTimeout() {
+        if (testTimeouts == null) {
+            return waitTime;
+        }
+
+        long timeout = waitTime;
+        for (String test : positiveTests) {
+            Integer testTimeout = testTimeouts.get(test);
+            timeout += (testTimeout != null) ? testTimeout : 0;
+        }
+        for (String test : negativeTests) {
+            Integer testTimeout = testTimeouts.get(test);
+            timeout += (testTimeout != null) ? testTimeout : 0;
+        }
+        return (int) Math.min(timeout, totalTestTimeout);
+    }
+
+    List<String> getOrderedTests() {
+        List<String> tests = new ArrayList<String>();
+        if (failFast || testOrdering) {
+            tests.addAll(negativeTests);
+            tests.addAll(positiveTests);
+        } else {
+            tests.addAll(positiveTests);
+            tests.addAll(negativeTests);
+        }
+
+        if (testOrdering && testStatistics != null) {
+            testStatistics.sort(tests);
+        }
+        return tests;
+    }
+
+    void initResults() {
         failedTests = new HashSet<String>();
+        timedOutTests = new HashSet<String>();
+        testTimes = new HashMap<String, Long>();
+    }
+
+    void addResults(List<String> tests, List<TestResultReader.Record> records) {
+        for (TestResultReader.Record record : records) {
+            String test = tests.get(record.index);
+            testTimes.put(test, (long) record.duration);
+            if (record.status != TestResultReader.PASSED) {
+                failedTests.add(test);
+            }
+            if (record.status == TestResultReader.TIMED_OUT) {
+                timedOutTests.add(test);
+            }
+        }
+    }
+
+    /**
+     * Parses the results printed by a runner that has no result file, i.e.,
+     * the persistent test runner.
+     */
+    boolean parseOutput(List<String> output) {
+        initResults();
         for (String str : output) {
             if (str.startsWith("FailedTest")) {
                 failedTests.add(str.split(":")[1].trim());
+            } else if (str.startsWith("TimedOutTest")) {
+                timedOutTests.add(str.split(":")[1].trim());
+            } else if (str.startsWith("PartialRun")) {
+                isLowerBound = true;
+            } else if (str.startsWith("TestTime")) {
+                String strs[] = str.substring(str.indexOf(':') + 1).trim().split("\\s+");
+                if (strs.length == 2) {
+                    testTimes.put(strs[0], Long.parseLong(strs[1]));
+                }
+            }
+        }
+        return processResults();
+    }
+
+    boolean processResults() {
+        if (testStatistics != null) {
+            for (Map.Entry<String, Long> entry : testTimes.entrySet()) {
+                String test = entry.getKey();
+                if (positiveTests.contains(test) || negativeTests.contains(test)) {
+                    testStatistics.record(test, entry.getValue(), failedTests.contains(test));
+                }
             }
         }
 
@@ -175,4 +422,22 @@ public class ExternalTestExecutor implements ITestExecutor {
         return this.failedTests;
     }
 
+    @Override
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    @Override
+    public boolean isLowerBound() {
+        return this.isLowerBound;
+    }
+
+    public Map<String, Long> getTestTimes() {
+        return this.testTimes;
+    }
+
+    public Set<String> getTimedOutTests() {
+        return this.timedOutTests;
+    }
+
 }
@@ -17,4 +17,16 @@ public interface ITestExecutor {
     public boolean isExceptional();
 
     public Set<String> getFailedTests();
+
+    /**
+     * If set before runTests(), the negative tests are run first and the run
+     * stops at the first failing test.
+     */
+    public void setFailFast(boolean failFast);
+
+    /**
+     * Returns true if the run was stopped early, in which case the failure
+     * counts are only lower bounds.
+     */
+    public boolean isLowerBound();
 }
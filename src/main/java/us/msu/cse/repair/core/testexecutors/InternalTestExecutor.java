@@ -2,34 +2,53 @@ package us.msu.cse.repair.core.testexecutors;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import jmetal.util.Configuration;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Request;
 import org.junit.runner.Result;
-import us.msu.cse.repair.core.util.CustomURLClassLoader;
 
 public class InternalTestExecutor implements ITestExecutor {
 
     Set<String> positiveTests;
     Set<String> negativeTests;
 
-    CustomURLClassLoader urlClassLoader;
+    URLClassLoader urlClassLoader;
+    TestWorkerPool workerPool;
 
     int waitTime;
     boolean isTimeout;
+    boolean isFailed;
 
     int failuresInPositive;
     int failuresInNegative;
 
     Set<String> failedTests;
 
+    TestStatistics testStatistics;
+    boolean testOrdering;
+
+    boolean failFast;
+    boolean isLowerBound;
+
+    Map<String, Integer> testTimeouts;
+    int totalTestTimeout = Integer.MAX_VALUE;
+
     public InternalTestExecutor(Set<String> positiveTests, Set<String> negativeTests,
-            CustomURLClassLoader urlClassLoader, int waitTime) throws MalformedURLException {
+            URLClassLoader urlClassLoader, TestWorkerPool workerPool, int waitTime) throws MalformedURLException {
         this.positiveTests = positiveTests;
         this.negativeTests = negativeTests;
 
         this.urlClassLoader = urlClassLoader;
+        this.workerPool = workerPool;
 
         this.waitTime = waitTime;
         this.isTimeout = false;
@@ -38,62 +57,81 @@ public class InternalTestExecutor implements ITestExecutor {
         this.failuresInNegative = 0;
     }
 
-    @SuppressWarnings("deprecation")
+    public void setTestStatistics(TestStatistics testStatistics) {
+        this.testStatistics = testStatistics;
+    }
+
+    public void setTestOrdering(boolean testOrdering) {
+        this.testOrdering = testOrdering;
+    }
+
+    public void setTestTimeouts(Map<String, Integer> testTimeouts) {
+        this.testTimeouts = testTimeouts;
+    }
+
+    public void setTestTimeouts(Map<String, Integer> testTimeouts, int totalTestTimeout) {
+        this.testTimeouts = testTimeouts;
+        this.totalTestTimeout = totalTestTimeout;
+    }
+
     @Override
     public boolean runTests() throws IOException {
         // TODO Auto-generated method stub
         failedTests = new HashSet<String>();
 
-        TestRunThread thread = new TestRunThread();
-        thread.start();
+        boolean flag;
         try {
-            thread.join(waitTime);
+            flag = workerPool.run(new TestRunTask(), getTotalWaitTime());
+        } catch (TimeoutException e) {
+            isTimeout = true;
+            flag = false;
         } catch (InterruptedException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-
-        boolean flag;
-
-        if (thread.isAlive()) {
             isTimeout = true;
-            thread.stop();
             flag = false;
-        } else {
-            flag = thread.isSuccess;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // e.g., a test class that cannot be loaded, so the results are
+            // not those of the variant
+            Configuration.logger_.warning("InternalTestExecutor.runTests: " + e.getCause());
+            isFailed = true;
+            flag = false;
+        } finally {
+            urlClassLoader.close();
         }
-
-        urlClassLoader.close();
         return flag;
     }
 
-    private class TestRunThread extends Thread {
-
-        boolean isSuccess;
+    private class TestRunTask implements Callable<Boolean> {
 
         @Override
-        public void run() {
+        public Boolean call() throws ClassNotFoundException {
+            Thread thread = Thread.currentThread();
+            thread.setContextClassLoader(urlClassLoader);
             try {
-                boolean posSuccess = runPositiveTests();
-                boolean negSuccess = runNegativeTests();
-                isSuccess = posSuccess & negSuccess;
-            } catch (ClassNotFoundException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+                if (failFast || testOrdering) {
+                    return runOrderedTests();
+                } else {
+                    boolean posSuccess = runPositiveTests();
+                    boolean negSuccess = runNegativeTests();
+                    return posSuccess & negSuccess;
+                }
+            } finally {
+                // do not keep the class loader of the variant reachable
+                thread.setContextClassLoader(null);
             }
         }
     }
 
+    boolean isCancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
     boolean runPositiveTests() throws ClassNotFoundException {
         for (String test : positiveTests) {
-            String[] temp = test.split("#");
-
-            Class<?> targetClass = urlClassLoader.loadClass(temp[0]);
-            Request request = Request.method(targetClass, temp[1]);
-
-            Result result = new JUnitCore().run(request);
-
-            if (!result.wasSuccessful()) {
+            if (isCancelled()) {
+                return false;
+            }
+            if (!runTest(test)) {
                 failuresInPositive++;
                 failedTests.add(test);
             }
@@ -104,12 +142,10 @@ public class InternalTestExecutor implements ITestExecutor {
 
     boolean runNegativeTests() throws ClassNotFoundException {
         for (String test : negativeTests) {
-            String[] temp = test.split("#");
-            Class<?> targetClass = urlClassLoader.loadClass(temp[0]);
-            Request request = Request.method(targetClass, temp[1]);
-            Result result = new JUnitCore().run(request);
-
-            if (!result.wasSuccessful()) {
+            if (isCancelled()) {
+                return false;
+            }
+            if (!runTest(test)) {
                 failuresInNegative++;
                 failedTests.add(test);
             }
@@ -117,6 +153,85 @@ public class InternalTestExecutor implements ITestExecutor {
         return failuresInNegative == 0;
     }
 
+    boolean runOrderedTests() throws ClassNotFoundException {
+        List<String> tests = new ArrayList<String>(negativeTests);
+        tests.addAll(positiveTests);
+        if (testOrdering && testStatistics != null) {
+            testStatistics.sort(tests);
+        }
+
+        for (int i = 0; i < tests.size(); i++) {
+            if (isCancelled()) {
+                return false;
+            }
+            String test = tests.get(i);
+            if (!runTest(test)) {
+                if (negativeTests.contains(test)) {
+                    failuresInNegative++;
+                } else {
+                    failuresInPositive++;
+                }
+                failedTests.add(test);
+
+                if (failFast) {
+                    isLowerBound = i < tests.size() - 1;
+                    break;
+                }
+            }
+        }
+        return failedTests.isEmpty();
+    }
+
+    boolean runTest(String test) throws ClassNotFoundException {
+        String[] temp = test.split("#");
+
+        long startTime = System.currentTimeMillis();
+        Class<?> targetClass = urlClassLoader.loadClass(temp[0]);
+        Request request = Request.method(targetClass, temp[1]);
+
+        Integer timeout = (testTimeouts != null) ? testTimeouts.get(test) : null;
+        boolean successful;
+        if (timeout == null) {
+            successful = new JUnitCore().run(request).wasSuccessful();
+        } else {
+            successful = runTestWithTimeout(request, timeout);
+        }
+
+        if (testStatistics != null) {
+            testStatistics.record(test, System.currentTimeMillis() - startTime, !successful);
+        }
+        return successful;
+    }
+
+    /**
+     * Runs the test on the current worker, which the watchdog interrupts once
+     * the timeout has passed. A test that ignores the interrupt keeps running
+     * until the whole run times out and the worker is quarantined.
+     */
+    boolean runTestWithTimeout(Request request, int timeout) {
+        TestWorkerPool.Interrupter interrupter = workerPool.scheduleInterrupt(timeout);
+        Result result = new JUnitCore().run(request);
+        boolean isTimedOut = interrupter.disarm();
+        return !isTimedOut && result.wasSuccessful();
+    }
+
+    int getTotalWaitTime() {
+        if (testTimeouts == null) {
+            return waitTime;
+        }
+
+        long total = waitTime;
+        for (String test : positiveTests) {
+            Integer timeout = testTimeouts.get(test);
+            total += (timeout != null) ? timeout : 0;
+        }
+        for (String test : negativeTests) {
+            Integer timeout = testTimeouts.get(test);
+            total += (timeout != null) ? timeout : 0;
+        }
+        return (int) Math.min(total, totalTestTimeout);
+    }
+
     @Override
     public int getFailureCountInPositive() {
         // TODO Auto-generated method stub
@@ -152,7 +267,7 @@ public class InternalTestExecutor implements ITestExecutor {
     @Override
     public boolean isExceptional() {
         // TODO Auto-generated method stub
-        return this.isTimeout;
+        return this.isTimeout || this.isFailed;
     }
 
     @Override
@@ -161,4 +276,14 @@ public class InternalTestExecutor implements ITestExecutor {
         return this.failedTests;
     }
 
+    @Override
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    @Override
+    public boolean isLowerBound() {
+        return this.isLowerBound;
+    }
+
 }
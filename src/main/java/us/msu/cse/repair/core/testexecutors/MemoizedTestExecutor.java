@@ -0,0 +1,169 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Looks up the result of a variant in the TestResultCache before running the
+ * tests. The test executor that actually runs the tests is only created on a
+ * miss. A cached result is reused if it was obtained on a superset of the
+ * positive tests, or, for a fail-fast run, if it shows that one of the tests
+ * fails. The original program is known to fail exactly the negative tests.
+ * Exceptional results, e.g., timeouts that may be due to the load of the
+ * machine, are not cached.
+ */
+public abstract class MemoizedTestExecutor implements ITestExecutor {
+
+    Set<String> positiveTests;
+    Set<String> negativeTests;
+
+    TestResultCache cache;
+    String key;
+
+    ITestExecutor testExecutor;
+    boolean failFast;
+
+    int failuresInPositive;
+    int failuresInNegative;
+
+    Set<String> failedTests;
+    boolean isExceptional;
+    boolean isLowerBound;
+
+    public MemoizedTestExecutor(Set<String> positiveTests, Set<String> negativeTests, TestResultCache cache,
+            String key) {
+        this.positiveTests = positiveTests;
+        this.negativeTests = negativeTests;
+
+        this.cache = cache;
+        this.key = key;
+    }
+
+    protected abstract ITestExecutor createTestExecutor() throws Exception;
+
+    @Override
+    public boolean runTests() throws Exception {
+        ITestExecutor testExecutor = lookup();
+        if (testExecutor == null) {
+            return getStatus();
+        }
+        return complete(testExecutor.runTests());
+    }
+
+    /**
+     * Returns null if the result is known without running any test, and
+     * otherwise the test executor to run, after which complete() must be
+     * called with its status.
+     */
+    public ITestExecutor lookup() throws Exception {
+        if (key.equals(TestResultCache.ORIGINAL)) {
+            setResults(new HashSet<String>(negativeTests), false, false);
+            return null;
+        }
+
+        TestResultCache.Entry entry = cache.get(key);
+        if (entry != null && reuse(entry)) {
+            return null;
+        }
+
+        testExecutor = createTestExecutor();
+        testExecutor.setFailFast(failFast);
+        return testExecutor;
+    }
+
+    public boolean complete(boolean status) {
+        Set<String> failed = testExecutor.isExceptional() ? new HashSet<String>()
+                : new HashSet<String>(testExecutor.getFailedTests());
+        setResults(failed, testExecutor.isExceptional(), testExecutor.isLowerBound());
+        if (!isExceptional) {
+            cache.put(key, new TestResultCache.Entry(new HashSet<String>(positiveTests), failed, isLowerBound));
+        }
+        return status;
+    }
+
+    public boolean getStatus() {
+        return !isExceptional && failedTests.isEmpty();
+    }
+
+    boolean reuse(TestResultCache.Entry entry) {
+        Set<String> failed = new HashSet<String>();
+        for (String test : entry.failedTests) {
+            if (positiveTests.contains(test) || negativeTests.contains(test)) {
+                failed.add(test);
+            }
+        }
+
+        if (!entry.isLowerBound && entry.positiveTests.containsAll(positiveTests)) {
+            setResults(failed, false, false);
+            return true;
+        } else if (failFast && !failed.isEmpty()) {
+            setResults(failed, false, true);
+            return true;
+        }
+        return false;
+    }
+
+    void setResults(Set<String> failed, boolean isExceptional, boolean isLowerBound) {
+        this.failedTests = failed;
+        this.isExceptional = isExceptional;
+        this.isLowerBound = isLowerBound;
+
+        failuresInPositive = 0;
+        failuresInNegative = 0;
+        for (String test : failed) {
+            if (negativeTests.contains(test)) {
+                failuresInNegative++;
+            } else {
+                failuresInPositive++;
+            }
+        }
+    }
+
+    @Override
+    public int getFailureCountInPositive() {
+        return failuresInPositive;
+    }
+
+    @Override
+    public int getFailureCountInNegative() {
+        return failuresInNegative;
+    }
+
+    @Override
+    public double getRatioOfFailuresInPositive() {
+        if (positiveTests.size() != 0) {
+            return (double) failuresInPositive / positiveTests.size();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public double getRatioOfFailuresInNegative() {
+        if (negativeTests.size() != 0) {
+            return (double) failuresInNegative / negativeTests.size();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean isExceptional() {
+        return isExceptional;
+    }
+
+    @Override
+    public Set<String> getFailedTests() {
+        return failedTests;
+    }
+
+    @Override
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    @Override
+    public boolean isLowerBound() {
+        return isLowerBound;
+    }
+}
@@ -0,0 +1,51 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the tests of a variant in one of the warm JVMs of a TestRunnerPool
+ * instead of launching a new JVM for every evaluation.
+ */
+public class PooledTestExecutor extends ExternalTestExecutor {
+
+    TestRunnerPool pool;
+
+    public PooledTestExecutor(Set<String> positiveTests, Set<String> negativeTests, String finalTestsInfoPath,
+            String binWorkingDir, TestRunnerPool pool, int waitTime) {
+        super(positiveTests, negativeTests, finalTestsInfoPath, pool.getBinJavaDir(), pool.getBinTestDir(),
+                pool.getDependences(), binWorkingDir, pool.getExternalProjRoot(), pool.getJvmPath(), waitTime);
+        this.pool = pool;
+    }
+
+    @Override
+    public boolean runTests() throws IOException, InterruptedException {
+        TestRunnerProcess runner = pool.acquire();
+        List<String> output = null;
+        try {
+            output = runner.run(getVariant(), getTestsArgument(getOrderedTests()), failFast,
+                    getProcessTimeout());
+        } finally {
+            // a test that timed out may still be running in the runner
+            pool.release(runner, output != null && !hasTimedOutTests(output));
+            releaseClasses();
+        }
+
+        if (output == null) {
+            isExceptional = true;
+            return false;
+        }
+
+        return parseOutput(output);
+    }
+
+    boolean hasTimedOutTests(List<String> output) {
+        for (String str : output) {
+            if (str.startsWith("TimedOutTest")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,242 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits the tests of a variant into several shards and runs each shard in
+ * its own JVM, all in parallel. The tests of a test class always stay in the
+ * same shard, so that class-level setup is not repeated across JVMs. The
+ * classes are assigned to the shards by the longest-processing-time rule,
+ * using the test durations measured in previous runs.
+ */
+public class ShardedTestExecutor extends ExternalTestExecutor {
+
+    int numberOfShards;
+
+    static final int POLL_INTERVAL = 20;
+
+    public ShardedTestExecutor(Set<String> positiveTests, Set<String> negativeTests, String binJavaDir,
+            String binTestDir, Set<String> dependences, String binWorkingDir, String externalProjRoot,
+            String jvmPath, int waitTime, int numberOfShards, TestStatistics testStatistics) {
+        super(positiveTests, negativeTests, null, binJavaDir, binTestDir, dependences, binWorkingDir,
+                externalProjRoot, jvmPath, waitTime);
+        this.numberOfShards = numberOfShards;
+        this.testStatistics = testStatistics;
+    }
+
+    @Override
+    public boolean runTests() throws IOException, InterruptedException {
+        try {
+            return runShards();
+        } finally {
+            releaseClasses();
+        }
+    }
+
+    @Override
+    void releaseClasses() {
+        if (classSegment != null) {
+            for (int i = 0; i < numberOfShards; i++) {
+                new File(binWorkingDir + "_shard" + i).delete();
+                new File(binWorkingDir + "_results" + i).delete();
+            }
+        }
+        super.releaseClasses();
+    }
+
+    boolean runShards() throws IOException, InterruptedException {
+        List<List<String>> shards = getShards();
+
+        List<ShardRunThread> threads = new ArrayList<ShardRunThread>();
+        for (int i = 0; i < shards.size(); i++) {
+            File file = new File(binWorkingDir + "_shard" + i);
+            File resultFile = new File(binWorkingDir + "_results" + i);
+            Process process = startTestProcess(getTestsArgument(shards.get(i), file), resultFile);
+            ShardRunThread thread = new ShardRunThread(shards.get(i), process, resultFile);
+            threads.add(thread);
+            thread.start();
+        }
+
+        // In fail-fast mode, the results are read while the shards are running,
+        // and all shards are stopped as soon as one of them reports a failure
+        boolean isStopped = false;
+        if (failFast) {
+            while (!isStopped && isAnyAlive(threads)) {
+                for (ShardRunThread thread : threads) {
+                    if (thread.readResults()) {
+                        isStopped = true;
+                    }
+                }
+                if (isStopped) {
+                    for (ShardRunThread thread : threads) {
+                        thread.process.destroy();
+                    }
+                } else {
+                    Thread.sleep(POLL_INTERVAL);
+                }
+            }
+        }
+
+        initResults();
+        for (ShardRunThread thread : threads) {
+            thread.join();
+            thread.readResults();
+            thread.reader.close();
+
+            if (thread.isInterrupted) {
+                isExceptional = true;
+            } else if (isStopped) {
+                isLowerBound = true;
+            } else if (!thread.isNormal || !thread.reader.isFinished()
+                    || thread.reader.getNumberOfTests() != thread.tests.size()) {
+                isExceptional = true;
+            } else if (thread.reader.isPartial()) {
+                isLowerBound = true;
+            }
+            addResults(thread.tests, thread.records);
+        }
+
+        if (isExceptional) {
+            return false;
+        }
+
+        return processResults();
+    }
+
+    boolean isAnyAlive(List<ShardRunThread> threads) {
+        for (ShardRunThread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<List<String>> getShards() {
+        Map<String, List<String>> testsByClass = new LinkedHashMap<String, List<String>>();
+        addTestsByClass(positiveTests, testsByClass);
+        addTestsByClass(negativeTests, testsByClass);
+
+        final Map<String, Double> costs = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, List<String>> entry : testsByClass.entrySet()) {
+            double cost = 0;
+            for (String test : entry.getValue()) {
+                // one extra millisecond per test accounts for the runner overhead
+                cost += (testStatistics != null ? testStatistics.getDuration(test) : 0) + 1;
+            }
+            costs.put(entry.getKey(), cost);
+        }
+
+        List<String> classes = new ArrayList<String>(testsByClass.keySet());
+        Collections.sort(classes, new Comparator<String>() {
+            @Override
+            public int compare(String c1, String c2) {
+                return Double.compare(costs.get(c2), costs.get(c1));
+            }
+        });
+
+        int size = Math.max(1, Math.min(numberOfShards, classes.size()));
+        List<List<String>> shards = new ArrayList<List<String>>();
+        double loads[] = new double[size];
+        for (int i = 0; i < size; i++) {
+            shards.add(new ArrayList<String>());
+        }
+
+        for (String clazz : classes) {
+            int min = 0;
+            for (int i = 1; i < size; i++) {
+                if (loads[i] < loads[min]) {
+                    min = i;
+                }
+            }
+            shards.get(min).addAll(testsByClass.get(clazz));
+            loads[min] += costs.get(clazz);
+        }
+
+        if (failFast || testOrdering) {
+            List<String> orderedTests = getOrderedTests();
+            final Map<String, Integer> positions = new HashMap<String, Integer>();
+            for (int i = 0; i < orderedTests.size(); i++) {
+                positions.put(orderedTests.get(i), i);
+            }
+
+            for (List<String> shard : shards) {
+                Collections.sort(shard, new Comparator<String>() {
+                    @Override
+                    public int compare(String t1, String t2) {
+                        return Integer.compare(positions.get(t1), positions.get(t2));
+                    }
+                });
+            }
+        }
+
+        return shards;
+    }
+
+    void addTestsByClass(Set<String> tests, Map<String, List<String>> testsByClass) {
+        for (String test : tests) {
+            String className = test.split("#")[0];
+            List<String> list = testsByClass.get(className);
+            if (list == null) {
+                list = new ArrayList<String>();
+                testsByClass.put(className, list);
+            }
+            list.add(test);
+        }
+    }
+
+    private class ShardRunThread extends Thread {
+
+        List<String> tests;
+        Process process;
+
+        TestResultReader reader;
+        List<TestResultReader.Record> records;
+
+        boolean isNormal;
+        boolean isInterrupted;
+
+        ShardRunThread(List<String> tests, Process process, File resultFile) {
+            this.tests = tests;
+            this.process = process;
+            this.reader = new TestResultReader(resultFile);
+            this.records = new ArrayList<TestResultReader.Record>();
+        }
+
+        /**
+         * Reads the results written so far and returns true if any of them
+         * is a failure.
+         */
+        boolean readResults() throws IOException {
+            List<TestResultReader.Record> newRecords = reader.read();
+            records.addAll(newRecords);
+            for (TestResultReader.Record record : newRecords) {
+                if (record.status != TestResultReader.PASSED) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            try {
+                isNormal = waitForTestProcess(process);
+            } catch (InterruptedException e) {
+                // the results of the shard are incomplete
+                process.destroy();
+                isInterrupted = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.tools.JavaFileObject;
+import us.msu.cse.repair.core.compiler.JavaFileObjectImpl;
+
+/**
+ * A cache of test results keyed by the bytecode of the variants, so that
+ * variants that compile to the same classes are only tested once. Classes
+ * whose bytecode is the same as that of the original program are left out of
+ * the key, and a variant without any other class is the original program.
+ */
+public class TestResultCache {
+
+    public static final String ORIGINAL = "ORIGINAL";
+
+    int capacity;
+    Map<String, String> originalHashes;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private int hits;
+    private int misses;
+
+    public TestResultCache(int capacity, Map<String, JavaFileObject> originalClasses) {
+        this.capacity = capacity;
+
+        this.originalHashes = new HashMap<String, String>();
+        if (originalClasses != null) {
+            for (Map.Entry<String, JavaFileObject> entry : originalClasses.entrySet()) {
+                originalHashes.put(entry.getKey(), getHash(((JavaFileObjectImpl) entry.getValue()).getByteCode()));
+            }
+        }
+
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TestResultCache.Entry> eldest) {
+                return size() > TestResultCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the key of the compiled classes of a variant, or ORIGINAL if
+     * all of them are the same as those of the original program.
+     */
+    public String getKey(Map<String, JavaFileObject> compiledClasses) {
+        Map<String, String> changed = new TreeMap<String, String>();
+        for (Map.Entry<String, JavaFileObject> entry : compiledClasses.entrySet()) {
+            String hash = getHash(((JavaFileObjectImpl) entry.getValue()).getByteCode());
+            if (!hash.equals(originalHashes.get(entry.getKey()))) {
+                changed.put(entry.getKey(), hash);
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return ORIGINAL;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : changed.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
+        }
+        return getHash(sb.toString().getBytes());
+    }
+
+    static String getHash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the entry unless it would replace a complete result with a
+     * partial one.
+     */
+    synchronized void put(String key, Entry entry) {
+        Entry old = entries.get(key);
+        if (old != null && old.isComplete() && !entry.isComplete()) {
+            return;
+        }
+        entries.put(key, entry);
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    static class Entry {
+
+        Set<String> positiveTests;
+        Set<String> failedTests;
+        boolean isLowerBound;
+
+        Entry(Set<String> positiveTests, Set<String> failedTests, boolean isLowerBound) {
+            this.positiveTests = positiveTests;
+            this.failedTests = failedTests;
+            this.isLowerBound = isLowerBound;
+        }
+
+        boolean isComplete() {
+            return !isLowerBound;
+        }
+    }
+}
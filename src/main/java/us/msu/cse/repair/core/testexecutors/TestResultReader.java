@@ -0,0 +1,122 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the result file written by the TestResultWriter of the external test
+ * runner. The file may be read while it is still being written: read() only
+ * returns the records that are complete so far.
+ */
+class TestResultReader implements Closeable {
+
+    static final int MAGIC = 0x41524a41;
+
+    static final byte PASSED = 0;
+    static final byte FAILED = 1;
+    static final byte TIMED_OUT = 2;
+
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 13;
+
+    private final File file;
+    private RandomAccessFile raf;
+
+    private int numberOfTests = -1;
+    private boolean isFinished;
+    private boolean isPartial;
+    private boolean isFailed;
+    private boolean isCorrupted;
+
+    TestResultReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the records that have been completely written since the last
+     * call.
+     */
+    List<Record> read() throws IOException {
+        List<Record> records = new ArrayList<Record>();
+        if (isFinished || isCorrupted) {
+            return records;
+        }
+
+        if (raf == null) {
+            if (!file.exists() || file.length() < HEADER_SIZE) {
+                return records;
+            }
+            raf = new RandomAccessFile(file, "r");
+            if (raf.readInt() != MAGIC) {
+                isCorrupted = true;
+                return records;
+            }
+            numberOfTests = raf.readInt();
+        }
+
+        while (raf.length() - raf.getFilePointer() >= RECORD_SIZE) {
+            Record record = new Record();
+            record.index = raf.readInt();
+            record.status = raf.readByte();
+            record.duration = raf.readInt();
+            record.failureHash = raf.readInt();
+
+            if (record.index == -1) {
+                isFinished = true;
+                isPartial = (record.status == 1);
+                isFailed = (record.status == 2);
+                break;
+            } else if (record.index < 0 || record.index >= numberOfTests) {
+                isCorrupted = true;
+                break;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    int getNumberOfTests() {
+        return numberOfTests;
+    }
+
+    /**
+     * Returns true once the end record has been read.
+     */
+    boolean isFinished() {
+        return isFinished;
+    }
+
+    boolean isPartial() {
+        return isPartial;
+    }
+
+    /**
+     * Returns true if the runner could not run the tests at all.
+     */
+    boolean isFailed() {
+        return isFailed;
+    }
+
+    boolean isCorrupted() {
+        return isCorrupted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (raf != null) {
+            raf.close();
+        }
+    }
+
+    static class Record {
+
+        int index;
+        byte status;
+        int duration;
+        int failureHash;
+    }
+}
@@ -0,0 +1,145 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A pool of warm test runner JVMs shared by all the PooledTestExecutors of a
+ * repair session. A runner is recycled after it has served
+ * maxRunsPerRunner variants, or as soon as it times out or crashes.
+ */
+public class TestRunnerPool {
+
+    String binJavaDir;
+    String binTestDir;
+    Set<String> dependences;
+
+    String externalProjRoot;
+    String jvmPath;
+
+    int poolSize;
+    int maxRunsPerRunner;
+
+    List<String> params;
+
+    private final LinkedList<TestRunnerProcess> idleRunners;
+    private int numberOfRunners;
+    private boolean isShutdown;
+
+    public TestRunnerPool(String binJavaDir, String binTestDir, Set<String> dependences, String externalProjRoot,
+            String jvmPath, int poolSize, int maxRunsPerRunner) throws IOException {
+        this.binJavaDir = binJavaDir;
+        this.binTestDir = binTestDir;
+        this.dependences = dependences;
+
+        this.externalProjRoot = externalProjRoot;
+        this.jvmPath = jvmPath;
+
+        this.poolSize = poolSize;
+        this.maxRunsPerRunner = maxRunsPerRunner;
+
+        this.idleRunners = new LinkedList<TestRunnerProcess>();
+        this.numberOfRunners = 0;
+        this.isShutdown = false;
+
+        initParams();
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                shutdown();
+            }
+        });
+    }
+
+    void initParams() throws IOException {
+        params = new ArrayList<String>();
+        params.add(jvmPath);
+        params.add("-cp");
+
+        String cpStr = new File(externalProjRoot, "bin").getCanonicalPath();
+        if (dependences != null) {
+            for (String dp : dependences) {
+                cpStr += (File.pathSeparator + dp);
+            }
+        }
+        params.add(cpStr);
+
+        params.add("us.msu.cse.repair.external.junit.PersistentTestRunner");
+        params.add(binJavaDir);
+        params.add(binTestDir);
+    }
+
+    synchronized TestRunnerProcess acquire() throws IOException, InterruptedException {
+        while (idleRunners.isEmpty() && numberOfRunners >= poolSize) {
+            wait();
+        }
+
+        if (!idleRunners.isEmpty()) {
+            return idleRunners.removeFirst();
+        }
+
+        numberOfRunners++;
+        try {
+            return new TestRunnerProcess(params);
+        } catch (IOException e) {
+            numberOfRunners--;
+            notifyAll();
+            throw e;
+        }
+    }
+
+    synchronized void release(TestRunnerProcess runner, boolean isHealthy) {
+        if (isHealthy && !isShutdown && runner.getNumberOfRuns() < maxRunsPerRunner) {
+            idleRunners.addLast(runner);
+        } else {
+            numberOfRunners--;
+            if (isHealthy) {
+                runner.exit();
+            } else {
+                runner.destroy();
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Lets the runners keep the classes not listed in the given file loaded
+     * across the variants whose classes are all listed in it.
+     */
+    public synchronized void setDirtyClassesFile(String dirtyClassesFile) {
+        params.add(dirtyClassesFile);
+    }
+
+    public synchronized void shutdown() {
+        isShutdown = true;
+        for (TestRunnerProcess runner : idleRunners) {
+            runner.exit();
+        }
+        idleRunners.clear();
+    }
+
+    public String getBinJavaDir() {
+        return binJavaDir;
+    }
+
+    public String getBinTestDir() {
+        return binTestDir;
+    }
+
+    public Set<String> getDependences() {
+        return dependences;
+    }
+
+    public String getExternalProjRoot() {
+        return externalProjRoot;
+    }
+
+    public String getJvmPath() {
+        return jvmPath;
+    }
+}
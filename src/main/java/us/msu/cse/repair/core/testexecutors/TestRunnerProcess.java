@@ -0,0 +1,110 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A handle to one PersistentTestRunner JVM. The output of the runner is
+ * collected by a reader thread so that a run can be abandoned when it takes
+ * longer than the allowed time.
+ */
+class TestRunnerProcess {
+
+    private static final String END_OF_STREAM = "\u0000EndOfStream";
+
+    private final Process process;
+    private final PrintWriter writer;
+    private final BlockingQueue<String> lines;
+
+    private int numberOfRuns;
+
+    TestRunnerProcess(List<String> params) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(params);
+        builder.redirectErrorStream(true);
+        builder.environment().put("TZ", "America/Los_Angeles");
+
+        process = builder.start();
+        writer = new PrintWriter(new OutputStreamWriter(process.getOutputStream()), true);
+        lines = new LinkedBlockingQueue<String>();
+
+        Thread readerThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines.add(line.trim());
+                    }
+                } catch (IOException e) {
+                    // The runner is gone, which is reported below
+                } finally {
+                    lines.add(END_OF_STREAM);
+                }
+            }
+        };
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Runs the tests of one variant.
+     *
+     * @return the output lines of the run, or null if the runner crashed, failed
+     * or did not finish within waitTime milliseconds
+     */
+    List<String> run(String variantDir, String testsArg, boolean failFast, int waitTime)
+            throws InterruptedException {
+        numberOfRuns++;
+
+        writer.println("Run\t" + variantDir + "\t" + testsArg + (failFast ? "\tFailFast" : ""));
+        if (writer.checkError()) {
+            return null;
+        }
+
+        List<String> output = new ArrayList<String>();
+        long deadline = System.currentTimeMillis() + waitTime;
+        while (true) {
+            String line;
+            if (waitTime > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                line = lines.poll(remaining, TimeUnit.MILLISECONDS);
+            } else {
+                line = lines.take();
+            }
+
+            if (line == null || line == END_OF_STREAM || line.startsWith("RunFailed")) {
+                return null;
+            } else if (line.equals("RunFinished")) {
+                return output;
+            } else if (!line.equals("RunnerReady")) {
+                output.add(line);
+            }
+        }
+    }
+
+    int getNumberOfRuns() {
+        return numberOfRuns;
+    }
+
+    void exit() {
+        writer.println("Exit");
+        writer.close();
+    }
+
+    void destroy() {
+        writer.close();
+        process.destroy();
+    }
+}
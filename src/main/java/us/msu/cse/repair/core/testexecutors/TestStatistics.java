@@ -0,0 +1,102 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of individual tests collected over a whole repair run: the
+ * running time (in milliseconds) and how often a test was run and how often it
+ * failed, i.e., killed a variant. A test's duration is smoothed over the runs
+ * in which it was observed, since variants may make a test faster or slower.
+ */
+public class TestStatistics {
+
+    static final double ALPHA = 0.5;
+
+    static final double DEFAULT_DURATION = 1;
+
+    Map<String, Double> durations;
+    Map<String, int[]> outcomes;
+
+    double total;
+
+    public TestStatistics() {
+        durations = new HashMap<String, Double>();
+        outcomes = new HashMap<String, int[]>();
+        total = 0;
+    }
+
+    public synchronized void record(String test, long duration) {
+        Double old = durations.get(test);
+        double value = (old == null) ? duration : (ALPHA * duration + (1 - ALPHA) * old);
+        durations.put(test, value);
+        total += (old == null) ? value : (value - old);
+    }
+
+    public synchronized void record(String test, long duration, boolean failed) {
+        record(test, duration);
+
+        int outcome[] = outcomes.get(test);
+        if (outcome == null) {
+            outcome = new int[2];
+            outcomes.put(test, outcome);
+        }
+        outcome[0]++;
+        if (failed) {
+            outcome[1]++;
+        }
+    }
+
+    /**
+     * Returns the estimated duration of the test. Tests that have not been
+     * observed yet are given the mean duration of the observed ones.
+     */
+    public synchronized double getDuration(String test) {
+        Double duration = durations.get(test);
+        if (duration != null) {
+            return duration;
+        } else if (!durations.isEmpty()) {
+            return total / durations.size();
+        } else {
+            return DEFAULT_DURATION;
+        }
+    }
+
+    /**
+     * Returns the estimated probability that the test fails on a variant,
+     * starting from 1/2 for a test that has never been run.
+     */
+    public synchronized double getFailureRate(String test) {
+        int outcome[] = outcomes.get(test);
+        if (outcome == null) {
+            return 0.5;
+        }
+        return (outcome[1] + 1.0) / (outcome[0] + 2.0);
+    }
+
+    /**
+     * Sorts the tests so that the tests that fail most often per millisecond
+     * of running time come first. The sort is stable, so tests with equal
+     * scores keep their order.
+     */
+    public synchronized void sort(List<String> tests) {
+        final Map<String, Double> scores = new HashMap<String, Double>();
+        for (String test : tests) {
+            scores.put(test, getFailureRate(test) / (getDuration(test) + 1));
+        }
+
+        Collections.sort(tests, new Comparator<String>() {
+            @Override
+            public int compare(String t1, String t2) {
+                return Double.compare(scores.get(t2), scores.get(t1));
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return durations.size();
+    }
+}
@@ -0,0 +1,200 @@
+package us.msu.cse.repair.core.testexecutors;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of worker threads shared by all the InternalTestExecutors of
+ * a repair session, so that several variants can be tested concurrently.
+ * Overruns are cancelled by interrupting the worker. A worker that does not
+ * stop within GRACE_PERIOD after the interrupt is quarantined: it is left
+ * behind and the pool is given an extra thread to replace it, which is taken
+ * back once the worker stops, so that no more than poolSize variants are
+ * tested at a time. Once too many workers are quarantined, the whole
+ * executor is recycled.
+ */
+public class TestWorkerPool {
+
+    static final long GRACE_PERIOD = 1000;
+
+    int poolSize;
+    int maxQuarantined;
+
+    private ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    private int numberOfQuarantined;
+    private final AtomicInteger threadID;
+
+    public TestWorkerPool(int poolSize) {
+        this.poolSize = poolSize;
+        this.maxQuarantined = poolSize * 4;
+
+        this.threadID = new AtomicInteger();
+        this.executor = createExecutor();
+        this.watchdog = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "test-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // most interrupters are disarmed long before their delay, and would
+        // otherwise pile up in the queue of the watchdog
+        this.watchdog.setRemoveOnCancelPolicy(true);
+        this.numberOfQuarantined = 0;
+    }
+
+    ThreadPoolExecutor createExecutor() {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "test-worker-" + threadID.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Runs the task on a worker and waits at most timeout milliseconds for it.
+     * On a timeout the worker is interrupted, and quarantined if it does not
+     * stop, before the TimeoutException is thrown.
+     */
+    public <T> T run(final Callable<T> task, long timeout)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicBoolean isQuarantined = new AtomicBoolean();
+        final ThreadPoolExecutor target;
+        Future<T> future;
+        synchronized (this) {
+            target = executor;
+            future = executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return task.call();
+                    } finally {
+                        Thread.interrupted();
+                        finished.countDown();
+                        release(target, isQuarantined);
+                    }
+                }
+            });
+        }
+
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            future.cancel(true);
+            if (!finished.await(GRACE_PERIOD, TimeUnit.MILLISECONDS)) {
+                quarantine(finished, isQuarantined);
+            }
+            throw e;
+        }
+    }
+
+    synchronized void quarantine(CountDownLatch finished, AtomicBoolean isQuarantined) {
+        // the worker may have stopped in the meantime
+        if (finished.getCount() == 0) {
+            return;
+        }
+        isQuarantined.set(true);
+
+        numberOfQuarantined++;
+        if (numberOfQuarantined >= maxQuarantined) {
+            executor.shutdownNow();
+            executor = createExecutor();
+            numberOfQuarantined = 0;
+        } else {
+            executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+            executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+        }
+    }
+
+    /**
+     * Called by a worker once its task has stopped. If the worker was
+     * quarantined, the extra thread given to the pool is taken back, so that
+     * one of the threads exits, unless the executor has been recycled since.
+     */
+    synchronized void release(ThreadPoolExecutor target, AtomicBoolean isQuarantined) {
+        if (!isQuarantined.get() || target != executor) {
+            return;
+        }
+        numberOfQuarantined--;
+        executor.setCorePoolSize(executor.getCorePoolSize() - 1);
+        executor.setMaximumPoolSize(executor.getMaximumPoolSize() - 1);
+    }
+
+    /**
+     * Interrupts the calling thread after the given delay unless the returned
+     * interrupter is disarmed before.
+     */
+    public Interrupter scheduleInterrupt(long delay) {
+        Interrupter interrupter = new Interrupter(Thread.currentThread());
+        interrupter.setFuture(watchdog.schedule(interrupter, delay, TimeUnit.MILLISECONDS));
+        return interrupter;
+    }
+
+    public synchronized int getNumberOfQuarantined() {
+        return numberOfQuarantined;
+    }
+
+    public synchronized void shutdown() {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    public static class Interrupter implements Runnable {
+
+        private final Thread thread;
+        private ScheduledFuture<?> future;
+        private boolean isDisarmed;
+        private boolean isFired;
+
+        Interrupter(Thread thread) {
+            this.thread = thread;
+        }
+
+        synchronized void setFuture(ScheduledFuture<?> future) {
+            this.future = future;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (!isDisarmed) {
+                isFired = true;
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Disarms the interrupter, cancelling its scheduled run, and returns
+         * true if it had already fired, in which case the interrupt status of
+         * the thread is cleared.
+         */
+        public synchronized boolean disarm() {
+            isDisarmed = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (isFired) {
+                Thread.interrupted();
+            }
+            return isFired;
+        }
+    }
+}
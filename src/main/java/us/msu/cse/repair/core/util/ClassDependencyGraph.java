@@ -0,0 +1,167 @@
+package us.msu.cse.repair.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The dependencies among the classes of a program, obtained by scanning the
+ * constant pools of the class files. A class depends on every class whose name
+ * occurs in its constant pool, either as a class reference or inside a type
+ * descriptor, so the graph over-approximates the real dependencies.
+ */
+public class ClassDependencyGraph {
+
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([\\w/$]+);");
+
+    Map<String, Set<String>> dependents;
+    Map<String, String> sourcePaths;
+    Set<String> statefulClasses;
+
+    public ClassDependencyGraph(String... binDirs) throws IOException {
+        Map<String, Set<String>> references = new HashMap<String, Set<String>>();
+        sourcePaths = new HashMap<String, String>();
+        statefulClasses = new HashSet<String>();
+
+        for (String binDir : binDirs) {
+            Collection<File> files = FileUtils.listFiles(new File(binDir), new SuffixFileFilter(".class"),
+                    TrueFileFilter.INSTANCE);
+            for (File file : files) {
+                scanClass(FileUtils.readFileToByteArray(file), references);
+            }
+        }
+
+        dependents = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+            for (String referenced : entry.getValue()) {
+                if (references.containsKey(referenced) && !referenced.equals(entry.getKey())) {
+                    Set<String> set = dependents.get(referenced);
+                    if (set == null) {
+                        set = new HashSet<String>();
+                        dependents.put(referenced, set);
+                    }
+                    set.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    void scanClass(byte[] bytes, Map<String, Set<String>> references) throws IOException {
+        ClassReader reader = new ClassReader(bytes);
+        final String className = reader.getClassName().replace('/', '.');
+
+        Set<String> referenced = new HashSet<String>();
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // only UTF8 entries, which hold all class names and descriptors
+            if (offset == 0 || bytes[offset - 1] != 1) {
+                continue;
+            }
+
+            int length = reader.readUnsignedShort(offset);
+            String str = new DataInputStream(new ByteArrayInputStream(bytes, offset, length + 2)).readUTF();
+            if (str.indexOf('/') < 0 && str.indexOf(';') < 0) {
+                referenced.add(str);
+            } else {
+                referenced.add(str.replace('/', '.'));
+                Matcher matcher = DESCRIPTOR_CLASS.matcher(str);
+                while (matcher.find()) {
+                    referenced.add(matcher.group(1).replace('/', '.'));
+                }
+            }
+        }
+        references.put(className, referenced);
+
+        final String packagePath = className.lastIndexOf('.') < 0 ? ""
+                : className.substring(0, className.lastIndexOf('.')).replace('.', '/') + "/";
+        final boolean isEnum = (reader.getAccess() & Opcodes.ACC_ENUM) != 0;
+        final String descriptor = "L" + reader.getClassName() + ";";
+
+        reader.accept(new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            public void visitSource(String source, String debug) {
+                if (source != null) {
+                    sourcePaths.put(className, packagePath + source);
+                }
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                if ((access & Opcodes.ACC_STATIC) != 0 && !isImmutable(access, name, desc)) {
+                    statefulClasses.add(className);
+                }
+                return null;
+            }
+
+            boolean isImmutable(int access, String name, String desc) {
+                if ((access & Opcodes.ACC_FINAL) == 0) {
+                    return false;
+                }
+                if (desc.length() == 1 || desc.equals("Ljava/lang/String;")) {
+                    return true;
+                }
+                // enum constants and the array of them
+                return isEnum && (desc.equals(descriptor) || name.equals("$VALUES"));
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+    }
+
+    /**
+     * Returns the given classes together with all classes that depend on them,
+     * directly or transitively.
+     */
+    public Set<String> getDependents(Set<String> classes) {
+        Set<String> result = new HashSet<String>(classes);
+        LinkedList<String> queue = new LinkedList<String>(classes);
+        while (!queue.isEmpty()) {
+            Set<String> set = dependents.get(queue.removeFirst());
+            if (set != null) {
+                for (String dependent : set) {
+                    if (result.add(dependent)) {
+                        queue.add(dependent);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the classes compiled from the given source files, which are
+     * given relative to the source root, e.g., "org/foo/Bar.java".
+     */
+    public Set<String> getClassesOfSources(Set<String> relativeSourcePaths) {
+        Set<String> classes = new HashSet<String>();
+        for (Map.Entry<String, String> entry : sourcePaths.entrySet()) {
+            if (relativeSourcePaths.contains(entry.getValue())) {
+                classes.add(entry.getKey());
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the classes with static fields that may change at run time,
+     * i.e., any static field other than a final field of a primitive type or
+     * of type String.
+     */
+    public Set<String> getStatefulClasses() {
+        return statefulClasses;
+    }
+}
@@ -0,0 +1,168 @@
+package us.msu.cse.repair.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.tools.JavaFileObject;
+import jmetal.util.Configuration;
+import us.msu.cse.repair.core.compiler.JavaFileObjectImpl;
+
+/**
+ * A memory-mapped file of fixed size through which the compiled classes of
+ * the variants are passed to the test runner JVMs, instead of a new directory
+ * of class files per variant. The classes of a variant are written as one
+ * segment after the previous one, and the space of the segments released
+ * after their tests have run is reused once the end of the file is reached.
+ *
+ * A segment is made of its length (an int, not counting itself), the number
+ * of classes (an int), and for each class the length of its binary name in
+ * UTF-8 (a short), the name, the length of its bytecode (an int) and the
+ * bytecode. The runners read it through a VariantClassLoader.
+ */
+public class ClassStore {
+
+    File file;
+    int capacity;
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+
+    private final TreeMap<Integer, Integer> segments;
+    private int next;
+
+    private int writes;
+    private int fallbacks;
+
+    public ClassStore(File file, int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+
+        file.getParentFile().mkdirs();
+        this.raf = new RandomAccessFile(file, "rw");
+        raf.setLength(capacity);
+        this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        this.segments = new TreeMap<Integer, Integer>();
+        this.next = 0;
+    }
+
+    /**
+     * Writes the classes to a new segment, or returns null if there is no
+     * room for them until some segments are released.
+     */
+    public Segment write(Map<String, JavaFileObject> compiledClasses) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(compiledClasses.size());
+        for (Map.Entry<String, JavaFileObject> entry : compiledClasses.entrySet()) {
+            byte[] name = entry.getKey().getBytes("UTF-8");
+            byte[] byteCode = ((JavaFileObjectImpl) entry.getValue()).getByteCode();
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeInt(byteCode.length);
+            out.write(byteCode);
+        }
+        out.close();
+
+        byte[] data = bytes.toByteArray();
+        ByteBuffer.wrap(data).putInt(0, data.length - 4);
+
+        ByteBuffer view;
+        int offset;
+        synchronized (this) {
+            offset = allocate(data.length);
+            if (offset < 0) {
+                fallbacks++;
+                return null;
+            }
+            writes++;
+            view = buffer.duplicate();
+        }
+
+        // the segments do not overlap, so they are written concurrently
+        view.position(offset);
+        view.put(data);
+        return new Segment(offset);
+    }
+
+    /**
+     * Returns the offset of a free range of the given length after the last
+     * segment, or at the start of the file if it does not fit at the end, or
+     * -1 if the range is still used by a segment.
+     */
+    int allocate(int length) {
+        if (length > capacity) {
+            return -1;
+        }
+
+        int offset = (length <= capacity - next) ? next : 0;
+        Map.Entry<Integer, Integer> last = segments.lowerEntry(offset + length);
+        if (last != null && last.getKey() + last.getValue() > offset) {
+            return -1;
+        }
+
+        segments.put(offset, length);
+        next = offset + length;
+        return offset;
+    }
+
+    synchronized void release(Segment segment) {
+        // the range may have been reused once the segment was released
+        if (!segment.isReleased) {
+            segments.remove(segment.offset);
+            segment.isReleased = true;
+        }
+    }
+
+    public synchronized int getWrites() {
+        return writes;
+    }
+
+    public synchronized int getFallbacks() {
+        return fallbacks;
+    }
+
+    /**
+     * Closes and deletes the store file. A failure to close it is reported,
+     * and the file is still deleted and the other resources released.
+     */
+    public void close() {
+        try {
+            raf.close();
+        } catch (IOException e) {
+            Configuration.logger_.warning("ClassStore.close: " + e.getMessage());
+        }
+        file.delete();
+    }
+
+    /**
+     * The classes of one variant, which are located by the runners as
+     * "[store file]#[offset]".
+     */
+    public class Segment {
+
+        final int offset;
+        boolean isReleased;
+
+        Segment(int offset) {
+            this.offset = offset;
+            this.isReleased = false;
+        }
+
+        public String getLocation() {
+            return file.getAbsolutePath() + "#" + offset;
+        }
+
+        public void release() {
+            ClassStore.this.release(this);
+        }
+    }
+}
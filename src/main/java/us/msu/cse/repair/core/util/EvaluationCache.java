@@ -0,0 +1,72 @@
+package us.msu.cse.repair.core.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the objective values of the solutions keyed by their canonical
+ * edits, i.e., the edits actually made after filtering and truncation, so
+ * that solutions making the same edits are only compiled and tested once.
+ * The least recently used entries are dropped beyond the capacity. A hit is
+ * neither counted as an evaluation by the problem nor charged against the
+ * maximum number of evaluations of the algorithms.
+ */
+public class EvaluationCache {
+
+    int capacity;
+
+    private final LinkedHashMap<Object, double[]> entries;
+
+    private int hits;
+    private int misses;
+
+    public EvaluationCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Object, double[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, double[]> eldest) {
+                return size() > EvaluationCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the objective values of the edits, or null if they
+     * are not cached.
+     */
+    public synchronized double[] get(Object edits) {
+        double objectives[] = entries.get(edits);
+        if (objectives == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return objectives.clone();
+    }
+
+    /**
+     * Counts a hit for a solution which takes the objective values of another
+     * one of the same set making the same edits.
+     */
+    public synchronized void hit() {
+        hits++;
+    }
+
+    public synchronized void put(Object edits, double objectives[]) {
+        entries.put(edits, objectives.clone());
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,250 @@
+package us.msu.cse.repair.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A pipeline of stages through which the variants are evaluated, so that a
+ * stage works on a variant while the later stages still work on the previous
+ * ones. Each stage has its own worker threads and takes the variants from a
+ * bounded queue, into which the workers of the previous stage wait for room.
+ * The first stage, named at construction, is run by the threads submitting
+ * the variants, which only record the time they spent on it.
+ *
+ * The statistics of a stage give its utilisation, i.e., the share of the time
+ * since the pipeline was created during which its workers were busy, and the
+ * depth of its queue as sampled whenever a variant is put into it. A stage
+ * whose queue is mostly full is the bottleneck, and deserves more workers.
+ */
+public class EvaluationPipeline<T> {
+
+    /**
+     * The work of a stage on one variant.
+     */
+    public interface Task<T> {
+        /**
+         * Returns false if the variant must not go through the later stages.
+         */
+        boolean process(T item) throws Exception;
+    }
+
+    int queueSize;
+
+    private final long startTime;
+    private final StageStatistics source;
+    private final List<Stage> stages;
+
+    public EvaluationPipeline(String sourceName, int queueSize) {
+        this.queueSize = queueSize;
+
+        this.startTime = System.nanoTime();
+        this.source = new StageStatistics(sourceName, 1);
+        this.stages = new ArrayList<Stage>();
+    }
+
+    /**
+     * Appends a stage, whose workers start at once.
+     */
+    public synchronized void addStage(String name, int workers, Task<T> task) {
+        Stage stage = new Stage(new StageStatistics(name, workers), task);
+        if (!stages.isEmpty()) {
+            stages.get(stages.size() - 1).next = stage;
+        }
+        stages.add(stage);
+
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(stage, "pipeline-" + name + "-" + i);
+            thread.setDaemon(true);
+            stage.threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Puts the variant into the queue of the first stage, waiting for room if
+     * needed, and returns the ticket through which its end is awaited. The
+     * given time is what the caller spent on it in the source stage.
+     */
+    public Ticket<T> submit(T item, long sourceTime) throws InterruptedException {
+        source.record(sourceTime, 1);
+        Ticket<T> ticket = new Ticket<T>(item);
+        if (stages.isEmpty()) {
+            ticket.done();
+        } else {
+            stages.get(0).put(ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * Returns the statistics of the source stage followed by those of the
+     * others.
+     */
+    public List<StageStatistics> getStageStatistics() {
+        List<StageStatistics> statistics = new ArrayList<StageStatistics>();
+        statistics.add(source);
+        for (Stage stage : stages) {
+            statistics.add(stage.statistics);
+        }
+        return Collections.unmodifiableList(statistics);
+    }
+
+    public long getElapsedTime() {
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+
+    public synchronized void shutdown() {
+        for (Stage stage : stages) {
+            for (Thread thread : stage.threads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    class Stage implements Runnable {
+        final StageStatistics statistics;
+        final Task<T> task;
+        final BlockingQueue<Ticket<T>> queue;
+        final List<Thread> threads;
+        Stage next;
+
+        Stage(StageStatistics statistics, Task<T> task) {
+            this.statistics = statistics;
+            this.task = task;
+            this.queue = new ArrayBlockingQueue<Ticket<T>>(queueSize);
+            this.threads = new ArrayList<Thread>();
+        }
+
+        void put(Ticket<T> ticket) throws InterruptedException {
+            queue.put(ticket);
+            statistics.sampleQueueDepth(queue.size());
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Ticket<T> ticket = queue.take();
+                    long start = System.nanoTime();
+                    boolean passed = false;
+                    try {
+                        passed = task.process(ticket.item);
+                    } catch (Throwable e) {
+                        ticket.failure = e;
+                    }
+                    statistics.record(System.nanoTime() - start, 1);
+
+                    if (passed && next != null) {
+                        next.put(ticket);
+                    } else {
+                        ticket.done();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // the pipeline is shut down
+            }
+        }
+    }
+
+    /**
+     * A variant going through the pipeline.
+     */
+    public static class Ticket<T> {
+        final T item;
+        final CountDownLatch latch;
+        volatile Throwable failure;
+
+        Ticket(T item) {
+            this.item = item;
+            this.latch = new CountDownLatch(1);
+        }
+
+        void done() {
+            latch.countDown();
+        }
+
+        /**
+         * Waits until the variant has gone through the last stage, or has
+         * been dropped by one of them, and returns it.
+         */
+        public T await() throws InterruptedException, ExecutionException {
+            latch.await();
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return item;
+        }
+    }
+
+    public class StageStatistics {
+        final String name;
+        final int workers;
+
+        private int processed;
+        private long busyTime;
+        private int maxQueueDepth;
+        private long queueDepthSum;
+        private int queueDepthSamples;
+
+        StageStatistics(String name, int workers) {
+            this.name = name;
+            this.workers = workers;
+        }
+
+        synchronized void record(long time, int count) {
+            busyTime += time;
+            processed += count;
+        }
+
+        synchronized void sampleQueueDepth(int depth) {
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+            queueDepthSum += depth;
+            queueDepthSamples++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public synchronized int getProcessed() {
+            return processed;
+        }
+
+        public synchronized long getBusyTime() {
+            return busyTime / 1000000;
+        }
+
+        public synchronized double getUtilisation() {
+            long elapsed = System.nanoTime() - startTime;
+            return (elapsed == 0) ? 0 : (double) busyTime / ((long) workers * elapsed);
+        }
+
+        public synchronized int getMaxQueueDepth() {
+            return maxQueueDepth;
+        }
+
+        public synchronized double getMeanQueueDepth() {
+            return (queueDepthSamples == 0) ? 0 : (double) queueDepthSum / queueDepthSamples;
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (this == source) {
+                return String.format("%s: %d variants in %d ms, %.0f%% busy", name, processed, getBusyTime(),
+                        100 * getUtilisation());
+            }
+            return String.format("%s (%d threads): %d variants in %d ms, %.0f%% busy, queue depth %.1f (max %d of %d)",
+                    name, workers, processed, getBusyTime(), 100 * getUtilisation(), getMeanQueueDepth(),
+                    maxQueueDepth, queueSize);
+        }
+    }
+}
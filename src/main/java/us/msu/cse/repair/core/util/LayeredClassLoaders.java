@@ -0,0 +1,103 @@
+package us.msu.cse.repair.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.JavaFileObject;
+import jmetal.util.Configuration;
+
+/**
+ * Class loaders shared by the in-process test executions of all variants. The
+ * dependencies are loaded once by the outermost loader, and the program and
+ * test classes that cannot be affected by any modification are loaded once by
+ * the middle loader. Only the dirty classes, i.e., the classes compiled from
+ * the files containing modification points, the classes with mutable static
+ * state, and all classes depending on them, are loaded again for every
+ * variant by a VariantClassLoader.
+ */
+public class LayeredClassLoaders {
+
+    URLClassLoader dependencyLoader;
+    URLClassLoader programLoader;
+
+    URL[] binURLs;
+    Set<String> dirtyClasses;
+
+    public LayeredClassLoaders(String binJavaDir, String binTestDir, Collection<String> dependences,
+            Set<String> dirtyClasses) throws IOException {
+        List<String> binDirs = new ArrayList<String>();
+        binDirs.add(binJavaDir);
+        binDirs.add(binTestDir);
+        binURLs = Helper.getURLs(binDirs);
+
+        Collection<String> depPaths = (dependences == null) ? new ArrayList<String>() : dependences;
+        dependencyLoader = new URLClassLoader(Helper.getURLs(depPaths));
+        programLoader = new URLClassLoader(binURLs, dependencyLoader);
+
+        this.dirtyClasses = dirtyClasses;
+    }
+
+    /**
+     * Returns the dirty classes of the program for the given source files
+     * containing modification points. They are also reloaded for every
+     * variant by the warm test runner JVMs.
+     */
+    public static Set<String> computeDirtyClasses(String binJavaDir, String binTestDir, Set<String> sourceFilePaths,
+            String srcJavaDir) throws IOException {
+        ClassDependencyGraph graph = new ClassDependencyGraph(binJavaDir, binTestDir);
+
+        Set<String> relativePaths = new HashSet<String>();
+        for (String path : sourceFilePaths) {
+            relativePaths.add(getRelativePath(srcJavaDir, path));
+        }
+        Set<String> roots = graph.getClassesOfSources(relativePaths);
+        roots.addAll(graph.getStatefulClasses());
+        return graph.getDependents(roots);
+    }
+
+    static String getRelativePath(String root, String path) {
+        return new File(root).getAbsoluteFile().toURI().relativize(new File(path).getAbsoluteFile().toURI())
+                .getPath();
+    }
+
+    /**
+     * Returns the class loader for a variant, or null if the variant contains
+     * a class that is not in the dirty set (e.g., a new class), in which case
+     * the caller should fall back to loading everything from scratch.
+     */
+    public URLClassLoader getVariantClassLoader(Map<String, JavaFileObject> compiledClasses) {
+        if (!dirtyClasses.containsAll(compiledClasses.keySet())) {
+            return null;
+        }
+        return new VariantClassLoader(binURLs, programLoader, compiledClasses, dirtyClasses);
+    }
+
+    public Set<String> getDirtyClasses() {
+        return dirtyClasses;
+    }
+
+    /**
+     * Closes both loaders, the dependency loader even if the program loader
+     * fails to close. A failure is reported, like in the rest of the
+     * shutdown path.
+     */
+    public void close() {
+        close(programLoader);
+        close(dependencyLoader);
+    }
+
+    void close(URLClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            Configuration.logger_.warning("LayeredClassLoaders.close: " + e.getMessage());
+        }
+    }
+}
@@ -5,18 +5,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 public class StreamReaderThread extends Thread {
 
     private BufferedReader reader;
     private List<String> output;
+    private int maxLines;
 
     private boolean isStreamExceptional;
 
     public StreamReaderThread(InputStream stream) {
+        this(stream, 0);
+    }
+
+    /**
+     * If maxLines is positive, only the last maxLines lines of the stream are
+     * kept.
+     */
+    public StreamReaderThread(InputStream stream, int maxLines) {
         this.reader = new BufferedReader(new InputStreamReader(stream));
-        this.output = new ArrayList<String>();
+        this.output = (maxLines > 0) ? new LinkedList<String>() : new ArrayList<String>();
+        this.maxLines = maxLines;
         isStreamExceptional = false;
     }
 
@@ -35,6 +46,9 @@ public class StreamReaderThread extends Thread {
             String o = null;
             while ((o = this.reader.readLine()) != null) {
                 output.add(o.trim());
+                if (maxLines > 0 && output.size() > maxLines) {
+                    output.remove(0);
+                }
             }
         } catch (IOException e) {
             isStreamExceptional = true;
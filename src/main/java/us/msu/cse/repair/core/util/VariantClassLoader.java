@@ -0,0 +1,52 @@
+package us.msu.cse.repair.core.util;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.JavaFileObject;
+import us.msu.cse.repair.core.compiler.JavaFileObjectImpl;
+
+/**
+ * The per-variant layer of the layered class loaders. The classes in the dirty
+ * set, i.e., the classes that may be modified and all classes depending on
+ * them, are loaded child-first: from the compiled classes of the variant if
+ * present, otherwise from the program directories. All other classes are
+ * delegated to the parent, which keeps them loaded across variants.
+ */
+public class VariantClassLoader extends URLClassLoader {
+
+    private Map<String, JavaFileObject> classes;
+    private Set<String> dirtyClasses;
+
+    public VariantClassLoader(URL[] urls, ClassLoader parent, Map<String, JavaFileObject> classes,
+            Set<String> dirtyClasses) {
+        super(urls, parent);
+        this.classes = classes;
+        this.dirtyClasses = dirtyClasses;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!dirtyClasses.contains(name)) {
+            return super.loadClass(name, resolve);
+        }
+
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> c = findLoadedClass(name);
+            if (c == null) {
+                JavaFileObject file = classes.get(name);
+                if (file != null) {
+                    byte[] bytes = ((JavaFileObjectImpl) file).getByteCode();
+                    c = defineClass(name, bytes, 0, bytes.length);
+                } else {
+                    c = findClass(name);
+                }
+            }
+            if (resolve) {
+                resolveClass(c);
+            }
+            return c;
+        }
+    }
+}
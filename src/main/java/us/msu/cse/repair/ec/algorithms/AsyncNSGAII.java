@@ -0,0 +1,166 @@
+package us.msu.cse.repair.ec.algorithms;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jmetal.core.Algorithm;
+import jmetal.core.Operator;
+import jmetal.core.Problem;
+import jmetal.core.Solution;
+import jmetal.core.SolutionSet;
+import jmetal.util.Distance;
+import jmetal.util.JMException;
+import jmetal.util.Ranking;
+import jmetal.util.comparators.CrowdingComparator;
+import us.msu.cse.repair.core.AbstractRepairProblem;
+
+/**
+ * A steady-state NSGA-II whose evaluations are asynchronous. As soon as one of
+ * the workers is free, a child is bred from the current population and
+ * evaluated on it; each evaluated child is then inserted into the population,
+ * whose worst solution by non-domination rank and crowding distance is
+ * dropped. The workers thus never wait for the slowest variant of a
+ * generation. There are as many workers as evaluation threads of the problem,
+ * whose evaluate(Solution) is called concurrently.
+ */
+public class AsyncNSGAII extends Algorithm {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    public AsyncNSGAII(Problem problem) {
+        super(problem);
+    }
+
+    @Override
+    public SolutionSet execute() throws JMException, ClassNotFoundException {
+        int populationSize = ((Integer) getInputParameter("populationSize")).intValue();
+        int maxEvaluations = ((Integer) getInputParameter("maxEvaluations")).intValue();
+
+        Operator mutationOperator = operators_.get("mutation");
+        Operator crossoverOperator = operators_.get("crossover");
+        Operator selectionOperator = operators_.get("selection");
+
+        int workers = 1;
+        if (problem_ instanceof AbstractRepairProblem) {
+            workers = ((AbstractRepairProblem) problem_).getEvaluationThreads();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        CompletionService<Solution> completionService = new ExecutorCompletionService<Solution>(executor);
+
+        SolutionSet population = new SolutionSet(populationSize);
+        EvaluationBudget budget = new EvaluationBudget(problem_, maxEvaluations);
+        int submitted = 0;
+        int running = 0;
+        try {
+            while (true) {
+                // the initial solutions are submitted first, and the children
+                // are bred once they are all evaluated, as the tournaments
+                // expect a population of constant size
+                while (running < workers && budget.allows(running)
+                        && (submitted < populationSize || population.size() == populationSize)) {
+                    Solution child;
+                    if (submitted < populationSize) {
+                        child = new Solution(problem_);
+                    } else {
+                        Solution[] parents = new Solution[2];
+                        parents[0] = (Solution) selectionOperator.execute(population);
+                        parents[1] = (Solution) selectionOperator.execute(population);
+                        Solution[] offSpring = (Solution[]) crossoverOperator.execute(parents);
+                        mutationOperator.execute(offSpring[0]);
+                        child = offSpring[0];
+                    }
+                    completionService.submit(newEvaluation(child));
+                    budget.charge(1);
+                    running++;
+                    submitted++;
+                }
+
+                if (running == 0) {
+                    break;
+                }
+                Solution child = completionService.take().get();
+                running--;
+
+                population = replace(population.union(toSolutionSet(child)), populationSize);
+                setRacingPopulation(population);
+            }
+        } catch (InterruptedException e) {
+            throw new JMException("Exception in AsyncNSGAII: " + e);
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            throw new JMException("Exception in AsyncNSGAII: " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        setOutputParameter("evaluations", budget.getEvaluations());
+
+        Ranking ranking = new Ranking(population);
+        ranking.getSubfront(0).printFeasibleFUN("FUN_AsyncNSGAII");
+        return ranking.getSubfront(0);
+    }
+
+    Callable<Solution> newEvaluation(final Solution solution) {
+        return new Callable<Solution>() {
+            @Override
+            public Solution call() throws JMException {
+                problem_.evaluate(solution);
+                problem_.evaluateConstraints(solution);
+                return solution;
+            }
+        };
+    }
+
+    void setRacingPopulation(SolutionSet population) {
+        if (problem_ instanceof AbstractRepairProblem) {
+            ((AbstractRepairProblem) problem_).setRacingPopulation(population);
+        }
+    }
+
+    SolutionSet toSolutionSet(Solution solution) {
+        SolutionSet solutionSet = new SolutionSet(1);
+        solutionSet.add(solution);
+        return solutionSet;
+    }
+
+    /**
+     * Returns the best solutions of the union as in NSGA-II, with their
+     * crowding distances assigned for the tournaments.
+     */
+    SolutionSet replace(SolutionSet union, int populationSize) {
+        Distance distance = new Distance();
+        Ranking ranking = new Ranking(union);
+        SolutionSet population = new SolutionSet(populationSize);
+
+        int remain = Math.min(populationSize, union.size());
+        int index = 0;
+        SolutionSet front = ranking.getSubfront(index);
+        while ((remain > 0) && (remain >= front.size())) {
+            distance.crowdingDistanceAssignment(front, problem_.getNumberOfObjectives());
+            for (int k = 0; k < front.size(); k++) {
+                population.add(front.get(k));
+            }
+            remain = remain - front.size();
+            index++;
+            if (remain > 0) {
+                front = ranking.getSubfront(index);
+            }
+        }
+
+        if (remain > 0) {
+            distance.crowdingDistanceAssignment(front, problem_.getNumberOfObjectives());
+            front.sort(new CrowdingComparator());
+            for (int k = 0; k < remain; k++) {
+                population.add(front.get(k));
+            }
+        }
+        return population;
+    }
+}
@@ -0,0 +1,136 @@
+package us.msu.cse.repair.ec.algorithms;
+
+import jmetal.core.Algorithm;
+import jmetal.core.Operator;
+import jmetal.core.Problem;
+import jmetal.core.Solution;
+import jmetal.core.SolutionSet;
+import jmetal.qualityIndicator.QualityIndicator;
+import jmetal.util.Distance;
+import jmetal.util.JMException;
+import jmetal.util.Ranking;
+import jmetal.util.comparators.CrowdingComparator;
+import us.msu.cse.repair.core.AbstractRepairProblem;
+
+/**
+ * NSGA-II as implemented in jMetal, except that each generation is evaluated
+ * as a whole by AbstractRepairProblem.evaluate(SolutionSet), so that the
+ * tests of its variants can be run in batches. The offspring are created in
+ * the same order as in jMetal, so the search itself is unchanged, but the
+ * cache hits are not charged against maxEvaluations.
+ */
+public class BatchNSGAII extends Algorithm {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    public BatchNSGAII(Problem problem) {
+        super(problem);
+    }
+
+    @Override
+    public SolutionSet execute() throws JMException, ClassNotFoundException {
+        int populationSize = ((Integer) getInputParameter("populationSize")).intValue();
+        int maxEvaluations = ((Integer) getInputParameter("maxEvaluations")).intValue();
+        QualityIndicator indicators = (QualityIndicator) getInputParameter("indicators");
+
+        SolutionSet population = new SolutionSet(populationSize);
+        EvaluationBudget budget = new EvaluationBudget(problem_, maxEvaluations);
+        int requiredEvaluations = 0;
+
+        Operator mutationOperator = operators_.get("mutation");
+        Operator crossoverOperator = operators_.get("crossover");
+        Operator selectionOperator = operators_.get("selection");
+
+        Distance distance = new Distance();
+
+        // Create the initial solutionSet
+        for (int i = 0; i < populationSize; i++) {
+            population.add(new Solution(problem_));
+        }
+        evaluate(population);
+        budget.charge(populationSize);
+        setRacingPopulation(population);
+
+        while (!budget.isExhausted()) {
+            SolutionSet offspringPopulation = new SolutionSet(populationSize);
+            Solution[] parents = new Solution[2];
+            for (int i = 0; i < (populationSize / 2); i++) {
+                if (!budget.isExhausted()) {
+                    parents[0] = (Solution) selectionOperator.execute(population);
+                    parents[1] = (Solution) selectionOperator.execute(population);
+                    Solution[] offSpring = (Solution[]) crossoverOperator.execute(parents);
+                    mutationOperator.execute(offSpring[0]);
+                    mutationOperator.execute(offSpring[1]);
+                    offspringPopulation.add(offSpring[0]);
+                    offspringPopulation.add(offSpring[1]);
+                    budget.charge(2);
+                }
+            }
+            evaluate(offspringPopulation);
+
+            SolutionSet union = population.union(offspringPopulation);
+            Ranking ranking = new Ranking(union);
+
+            int remain = populationSize;
+            int index = 0;
+            population.clear();
+
+            SolutionSet front = ranking.getSubfront(index);
+            while ((remain > 0) && (remain >= front.size())) {
+                distance.crowdingDistanceAssignment(front, problem_.getNumberOfObjectives());
+                for (int k = 0; k < front.size(); k++) {
+                    population.add(front.get(k));
+                }
+                remain = remain - front.size();
+                index++;
+                if (remain > 0) {
+                    front = ranking.getSubfront(index);
+                }
+            }
+
+            if (remain > 0) {
+                distance.crowdingDistanceAssignment(front, problem_.getNumberOfObjectives());
+                front.sort(new CrowdingComparator());
+                for (int k = 0; k < remain; k++) {
+                    population.add(front.get(k));
+                }
+            }
+            setRacingPopulation(population);
+
+            if ((indicators != null) && (requiredEvaluations == 0)) {
+                double HV = indicators.getHypervolume(population);
+                if (HV >= (0.98 * indicators.getTrueParetoFrontHypervolume())) {
+                    requiredEvaluations = budget.getEvaluations();
+                }
+            }
+        }
+
+        setOutputParameter("evaluations", requiredEvaluations);
+
+        Ranking ranking = new Ranking(population);
+        ranking.getSubfront(0).printFeasibleFUN("FUN_NSGAII");
+        return ranking.getSubfront(0);
+    }
+
+    void evaluate(SolutionSet solutionSet) throws JMException {
+        if (problem_ instanceof AbstractRepairProblem) {
+            ((AbstractRepairProblem) problem_).evaluate(solutionSet);
+        } else {
+            for (int i = 0; i < solutionSet.size(); i++) {
+                problem_.evaluate(solutionSet.get(i));
+            }
+        }
+        for (int i = 0; i < solutionSet.size(); i++) {
+            problem_.evaluateConstraints(solutionSet.get(i));
+        }
+    }
+
+    void setRacingPopulation(SolutionSet population) {
+        if (problem_ instanceof AbstractRepairProblem) {
+            ((AbstractRepairProblem) problem_).setRacingPopulation(population);
+        }
+    }
+}
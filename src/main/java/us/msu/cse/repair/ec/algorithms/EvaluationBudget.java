@@ -0,0 +1,60 @@
+package us.msu.cse.repair.ec.algorithms;
+
+import jmetal.core.Problem;
+import us.msu.cse.repair.core.AbstractRepairProblem;
+
+/**
+ * The evaluations an algorithm charges against maxEvaluations. With the
+ * evaluation cache of AbstractRepairProblem, only the solutions actually
+ * compiled and tested are charged, and the cache hits are counted apart by
+ * the problem. Otherwise every solution handed to the problem is charged,
+ * as in jMetal. As the population may converge to edits that are all
+ * cached, the budget is also exhausted once MAX_SOLUTIONS_PER_EVALUATION
+ * times maxEvaluations solutions have been handed over.
+ */
+class EvaluationBudget {
+
+    static final int MAX_SOLUTIONS_PER_EVALUATION = 10;
+
+    int maxEvaluations;
+
+    private final AbstractRepairProblem repairProblem;
+    private final int startEvaluations;
+    private int solutions;
+
+    EvaluationBudget(Problem problem, int maxEvaluations) {
+        this.maxEvaluations = maxEvaluations;
+
+        if (problem instanceof AbstractRepairProblem && ((AbstractRepairProblem) problem).isEvaluationCached()) {
+            this.repairProblem = (AbstractRepairProblem) problem;
+            this.startEvaluations = repairProblem.getEvaluations();
+        } else {
+            this.repairProblem = null;
+            this.startEvaluations = 0;
+        }
+    }
+
+    /**
+     * Records that the given number of solutions are handed to the problem.
+     */
+    void charge(int count) {
+        solutions += count;
+    }
+
+    int getEvaluations() {
+        return (repairProblem == null) ? solutions : repairProblem.getEvaluations() - startEvaluations;
+    }
+
+    /**
+     * Returns true if one more solution may be handed to the problem while
+     * the given number of them are still being evaluated.
+     */
+    boolean allows(int pending) {
+        int evaluations = (repairProblem == null) ? solutions : getEvaluations() + pending;
+        return evaluations < maxEvaluations && solutions < (long) maxEvaluations * MAX_SOLUTIONS_PER_EVALUATION;
+    }
+
+    boolean isExhausted() {
+        return !allows(0);
+    }
+}
@@ -4,9 +4,13 @@ import java.util.Comparator;
 import jmetal.core.*;
 import jmetal.util.JMException;
 import jmetal.util.comparators.ObjectiveComparator;
+import us.msu.cse.repair.core.AbstractRepairProblem;
 
 /**
- * Class implementing a generational genetic algorithm
+ * Class implementing a generational genetic algorithm. Each generation is
+ * evaluated as a whole, so that its variants can be evaluated in parallel;
+ * the offspring are only selected from the previous generation, so the search
+ * is the same as when they are evaluated one by one.
  */
 public class GA extends Algorithm {
 
@@ -33,7 +37,7 @@ public class GA extends Algorithm {
     public SolutionSet execute() throws JMException, ClassNotFoundException {
         int populationSize;
         int maxEvaluations;
-        int evaluations;
+        EvaluationBudget budget;
 
         SolutionSet population;
         SolutionSet offspringPopulation;
@@ -54,7 +58,7 @@ public class GA extends Algorithm {
         population = new SolutionSet(populationSize);
         offspringPopulation = new SolutionSet(populationSize);
 
-        evaluations = 0;
+        budget = new EvaluationBudget(problem_, maxEvaluations);
 
         // Read the operators
         mutationOperator = this.operators_.get("mutation");
@@ -65,12 +69,12 @@ public class GA extends Algorithm {
         Solution newIndividual;
         for (int i = 0; i < populationSize; i++) {
             newIndividual = new Solution(problem_);
-            problem_.evaluate(newIndividual);
-            evaluations++;
+            budget.charge(1);
             population.add(newIndividual);
         } // for
+        evaluate(population);
 
-        while (evaluations < maxEvaluations) {
+        while (!budget.isExhausted()) {
             for (int i = 0; i < populationSize / 2; i++) {
                 // Selection
                 Solution[] parents = new Solution[2];
@@ -85,16 +89,15 @@ public class GA extends Algorithm {
                 mutationOperator.execute(offspring[0]);
                 mutationOperator.execute(offspring[1]);
 
-                // Evaluation of the new individual
-                problem_.evaluate(offspring[0]);
-                problem_.evaluate(offspring[1]);
-
-                evaluations += 2;
+                budget.charge(2);
 
                 offspringPopulation.add(offspring[0]);
                 offspringPopulation.add(offspring[1]);
             } // for
 
+            // Evaluation of the new individuals
+            evaluate(offspringPopulation);
+
             // The offspring population becomes the new current population
             population.clear();
             for (int i = 0; i < populationSize; i++) {
@@ -110,4 +113,14 @@ public class GA extends Algorithm {
 
         return resultPopulation;
     } // execute
+
+    private void evaluate(SolutionSet solutionSet) throws JMException {
+        if (problem_ instanceof AbstractRepairProblem) {
+            ((AbstractRepairProblem) problem_).evaluate(solutionSet);
+        } else {
+            for (int i = 0; i < solutionSet.size(); i++) {
+                problem_.evaluate(solutionSet.get(i));
+            }
+        }
+    }
 }
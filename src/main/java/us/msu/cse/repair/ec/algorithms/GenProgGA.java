@@ -1,11 +1,15 @@
 package us.msu.cse.repair.ec.algorithms;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import jmetal.core.Algorithm;
 import jmetal.core.Operator;
 import jmetal.core.Problem;
 import jmetal.core.Solution;
 import jmetal.core.SolutionSet;
 import jmetal.util.JMException;
+import us.msu.cse.repair.core.AbstractRepairProblem;
 import us.msu.cse.repair.ec.variable.Edits;
 
 public class GenProgGA extends Algorithm {
@@ -17,7 +21,7 @@ public class GenProgGA extends Algorithm {
 
     int populationSize;
     int maxEvaluations;
-    int evaluations;
+    EvaluationBudget budget;
 
     SolutionSet population;
 
@@ -39,7 +43,7 @@ public class GenProgGA extends Algorithm {
         maxEvaluations = ((Integer) this.getInputParameter("maxEvaluations")).intValue();
 
         // Initialize the variables
-        evaluations = 0;
+        budget = new EvaluationBudget(problem_, maxEvaluations);
 
         // Read the operators
         mutationOperator = this.operators_.get("mutation");
@@ -48,7 +52,7 @@ public class GenProgGA extends Algorithm {
 
         initPopulation();
 
-        while (evaluations < maxEvaluations) {
+        while (!budget.isExhausted()) {
             SolutionSet matingPopulation = getMatingPopulation();
             if (matingPopulation == null) {
                 return new SolutionSet(0);
@@ -71,19 +75,30 @@ public class GenProgGA extends Algorithm {
                 population.add(offspring[1]);
             }
 
+            // An individual may occur more than once, and must then be
+            // evaluated before it is mutated again
+            SolutionSet batch = new SolutionSet(populationSize);
+            Set<Solution> pending = Collections.newSetFromMap(new IdentityHashMap<Solution, Boolean>());
             for (int i = 0; i < populationSize; i++) {
                 Solution individual = population.get(i);
+                if (!pending.add(individual)) {
+                    evaluate(batch);
+                    batch.clear();
+                    pending.clear();
+                    pending.add(individual);
+                }
                 mutationOperator.execute(individual);
-                problem_.evaluate(individual);
-                evaluations++;
+                batch.add(individual);
+                budget.charge(1);
             }
+            evaluate(batch);
         }
 
         return population;
     }
 
     private SolutionSet getMatingPopulation() throws ClassNotFoundException, JMException {
-        while (true && evaluations < maxEvaluations) {
+        while (true && !budget.isExhausted()) {
             SolutionSet matingPopulation = new SolutionSet(populationSize);
             for (int i = 0; i < populationSize; i++) {
                 if (population.get(i).getObjective(0) != Double.MAX_VALUE) {
@@ -107,11 +122,21 @@ public class GenProgGA extends Algorithm {
         for (int i = 0; i < populationSize; i++) {
             newIndividual = new Solution(problem_);
             mutation(newIndividual, mutationOperator);
-            problem_.evaluate(newIndividual);
-            evaluations++;
+            budget.charge(1);
             population.add(newIndividual);
 
         } // for
+        evaluate(population);
+    }
+
+    private void evaluate(SolutionSet solutionSet) throws JMException {
+        if (problem_ instanceof AbstractRepairProblem) {
+            ((AbstractRepairProblem) problem_).evaluate(solutionSet);
+        } else {
+            for (int i = 0; i < solutionSet.size(); i++) {
+                problem_.evaluate(solutionSet.get(i));
+            }
+        }
     }
 
     private void mutation(Solution solution, Operator mutationOperator) throws JMException {
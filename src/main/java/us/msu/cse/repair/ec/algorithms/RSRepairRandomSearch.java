@@ -26,11 +26,13 @@ public class RSRepairRandomSearch extends Algorithm {
         int maxEvaluations = ((Integer) this.getInputParameter("maxEvaluations")).intValue();
         Operator mutationOperator = this.operators_.get("mutation");
         SolutionSet population = new SolutionSet(maxEvaluations);
+        EvaluationBudget budget = new EvaluationBudget(problem_, maxEvaluations);
 
         Solution newIndividual;
-        for (int i = 0; i < maxEvaluations; i++) {
+        while (!budget.isExhausted()) {
             newIndividual = new Solution(problem_);
             mutation(newIndividual, mutationOperator);
+            budget.charge(1);
             problem_.evaluate(newIndividual);
 
             if (newIndividual.getObjective(0) == 0) {
@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +17,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import javax.tools.JavaFileObject;
 import jmetal.core.Solution;
+import jmetal.core.SolutionSet;
 import jmetal.encodings.variable.ArrayInt;
 import jmetal.encodings.variable.Binary;
 import jmetal.util.Configuration;
@@ -24,10 +26,13 @@ import org.apache.commons.io.FileUtils;
 import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
 import us.msu.cse.repair.core.AbstractRepairProblem;
+import us.msu.cse.repair.core.compiler.MutantSchema;
 import us.msu.cse.repair.core.filterrules.MIFilterRule;
+import us.msu.cse.repair.core.manipulation.Edit;
 import us.msu.cse.repair.core.parser.LCNode;
 import us.msu.cse.repair.core.parser.ModificationPoint;
 import us.msu.cse.repair.core.testexecutors.ITestExecutor;
+import us.msu.cse.repair.core.util.EvaluationPipeline;
 import us.msu.cse.repair.core.util.IO;
 import us.msu.cse.repair.ec.representation.ArrayIntAndBinarySolutionType;
 import utdallas.edu.profl.replicate.enums.PatchCategory;
@@ -45,8 +50,6 @@ public class ArjaProblem extends AbstractRepairProblem {
 
     Boolean miFilterRule;
 
-    List<String> solutionMessages = new LinkedList<>();
-
     public ArjaProblem(Map<String, Object> parameters) throws Exception {
         super(parameters);
 
@@ -119,8 +122,75 @@ public class ArjaProblem extends AbstractRepairProblem {
 
     @Override
     public void evaluate(Solution solution) throws JMException {
-        solutionMessages.clear();
+        SolutionSet solutionSet = new SolutionSet(1);
+        solutionSet.add(solution);
+        evaluate(solutionSet);
+    }
 
+    /**
+     * Builds all variants first, one at a time as the ASTs are shared, then
+     * compiles them and runs their tests together on the evaluation threads,
+     * and finally assigns the objective values. With the evaluation pipeline,
+     * each variant is instead handed over as soon as it is built. Solutions
+     * may be evaluated concurrently. A solution making the same edits as one
+     * evaluated before, or as another one of the same set, takes its
+     * objective values.
+     */
+    @Override
+    public void evaluate(SolutionSet solutionSet) throws JMException {
+        List<Variant> variants = new ArrayList<Variant>();
+        List<Variant> duplicates = new ArrayList<Variant>();
+        Map<Object, Variant> originals = (evaluationCache == null) ? null : new HashMap<Object, Variant>();
+        synchronized (sourceASTs) {
+            for (int i = 0; i < solutionSet.size(); i++) {
+                long startTime = System.nanoTime();
+                Variant variant = prepare(solutionSet.get(i), originals);
+                if (variant == null) {
+                    continue;
+                }
+                if (variant.original != null) {
+                    duplicates.add(variant);
+                } else {
+                    variants.add(variant);
+                    if (isPipelined()) {
+                        variant.ticket = submitToPipeline(variant.modifiedJavaSources, variant.switches,
+                                variant.solution, System.nanoTime() - startTime);
+                    }
+                }
+            }
+        }
+
+        if (isPipelined()) {
+            awaitVariants(variants);
+        } else {
+            compileVariants(variants);
+
+            List<TestRun> testRuns = new ArrayList<TestRun>();
+            for (Variant variant : variants) {
+                if (variant.testRun != null) {
+                    testRuns.add(variant.testRun);
+                }
+            }
+            runTests(testRuns);
+        }
+
+        for (Variant variant : variants) {
+            finish(variant);
+        }
+        // the original has just been evaluated, or assigned the maximum values
+        // if its tests could not be run, so it is not looked up in the cache
+        for (Variant variant : duplicates) {
+            shareEvaluation(variant.original.solution, variant.solution);
+        }
+    }
+
+    /**
+     * Applies the edits of the solution. Returns null if the solution has no
+     * edit or if its edits are cached, in which case it is already evaluated,
+     * and a variant without sources if the same edits are made by one of the
+     * given variants, which is then its original.
+     */
+    Variant prepare(Solution solution, Map<Object, Variant> originals) throws JMException {
         System.out.println("-------------------------------------");
         System.out.println("One fitness evaluation starts...");
 
@@ -163,9 +233,21 @@ public class ArjaProblem extends AbstractRepairProblem {
             }
         }
 
+        // the edits learned not to compile are dropped
+        Iterator<Integer> iter = selectedMP.keySet().iterator();
+        while (iter.hasNext()) {
+            int i = iter.next();
+            if (isBlacklisted(modificationPoints.get(i), availableManipulations.get(i).get(array[i]),
+                    getIngredStatement(i, size, array))) {
+                iter.remove();
+                solutionInfo.remove(i);
+                bits.set(i, false);
+            }
+        }
+
         if (selectedMP.isEmpty()) {
             assignMaxObjectiveValues(solution);
-            return;
+            return null;
         }
 
         List<LCNode> modifiedLines = new LinkedList();
@@ -188,55 +270,185 @@ public class ArjaProblem extends AbstractRepairProblem {
             numberOfEdits = maxNumberOfEdits;
         }
 
+        List<Edit> edits = new ArrayList<Edit>();
         for (int i = 0; i < numberOfEdits; i++) {
-            manipulateOneModificationPoint(list.get(i).getKey(), size, array, astRewriters);
+            int index = list.get(i).getKey();
+            edits.add(new Edit(modificationPoints.get(index), availableManipulations.get(index).get(
+                    array[index]), getIngredStatement(index, size, array)));
         }
 
         for (int i = numberOfEdits; i < selectedMP.size(); i++) {
             bits.set(list.get(i).getKey(), false);
         }
 
-        Map<String, String> modifiedJavaSources = getModifiedJavaSources(astRewriters);
-        Map<String, JavaFileObject> compiledClasses = getCompiledClassesForTestExecution(modifiedJavaSources);
+        // at most one edit is made at each modification point, so the order
+        // of the edits does not matter
+        Set<Edit> canonicalEdits = new HashSet<Edit>(edits);
+        if (lookUpEvaluation(canonicalEdits, solution)) {
+            return null;
+        }
+
+        Variant variant = new Variant();
+        variant.solution = solution;
+        variant.list = list;
+        variant.numberOfEdits = numberOfEdits;
+        variant.modifiedLines = modifiedLines;
+        variant.canonicalEdits = canonicalEdits;
+        if (originals != null) {
+            variant.original = originals.get(canonicalEdits);
+            if (variant.original != null) {
+                return variant;
+            }
+            originals.put(canonicalEdits, variant);
+        }
+
+        MutantSchema.Switches switches = newSwitches();
+        for (int i = 0; i < numberOfEdits; i++) {
+            manipulateOneModificationPoint(list.get(i).getKey(), size, array, astRewriters, switches);
+        }
+        variant.modifiedJavaSources = getModifiedJavaSources(astRewriters, edits);
+        variant.switches = switches;
+        variant.edits = edits;
+        variant.astRewriters = astRewriters;
+        return variant;
+    }
+
+    /**
+     * Compiles the variants, and learns from those that do not compile.
+     */
+    void compileVariants(List<Variant> variants) throws JMException {
+        List<Map<String, String>> javaSources = new ArrayList<Map<String, String>>();
+        List<MutantSchema.Switches> switches = new ArrayList<MutantSchema.Switches>();
+        List<List<String>> errors = new ArrayList<List<String>>();
+        for (Variant variant : variants) {
+            javaSources.add(variant.modifiedJavaSources);
+            switches.add(variant.switches);
+            errors.add(new ArrayList<String>());
+        }
+
+        List<TestRun> testRuns = getTestRuns(javaSources, switches, errors);
+        synchronized (sourceASTs) {
+            for (int i = 0; i < variants.size(); i++) {
+                Variant variant = variants.get(i);
+                variant.testRun = testRuns.get(i);
+                if (variant.testRun == null) {
+                    learnFromCompilationFailure(variant.edits, variant.astRewriters, errors.get(i));
+                } else {
+                    variant.testRun.solution = variant.solution;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the variants handed over to the evaluation pipeline, and
+     * learns from those that do not compile.
+     */
+    void awaitVariants(List<Variant> variants) throws JMException {
+        List<PipelinedVariant> results = new ArrayList<PipelinedVariant>();
+        for (Variant variant : variants) {
+            results.add(awaitPipeline(variant.ticket));
+        }
+
+        synchronized (sourceASTs) {
+            for (int i = 0; i < variants.size(); i++) {
+                Variant variant = variants.get(i);
+                variant.testRun = results.get(i).testRun;
+                if (variant.testRun == null) {
+                    learnFromCompilationFailure(variant.edits, variant.astRewriters, results.get(i).errors);
+                }
+            }
+        }
+    }
+
+    /**
+     * A variant is promising unless its objective values, with the failure
+     * rate on the positive tests lowered by the racing bound, are dominated
+     * in the racing population. The size of the variant is known, and so is
+     * its failure rate on the negative tests, all of which have run.
+     */
+    @Override
+    protected boolean isPromising(TestRun testRun) {
+        ITestExecutor testExecutor = testRun.testExecutor;
+        if (testRun.solution == null) {
+            return true;
+        }
+
+        double bound = getRacingBound(testRun.samplePosTests.size());
+        double ratioOfFailuresInPositive = Math.max(0, testExecutor.getRatioOfFailuresInPositive() - bound);
+        double ratioOfFailuresInNegative = testExecutor.getRatioOfFailuresInNegative();
+        double fitness = weight * ratioOfFailuresInPositive + ratioOfFailuresInNegative;
+
+        // the bits of the edits not made have been cleared by prepare()
+        int numberOfEdits = ((Binary) testRun.solution.getDecisionVariables()[1]).bits_.cardinality();
+
+        double objectives[] = new double[numberOfObjectives];
+        if (numberOfObjectives == 1 || numberOfObjectives == 2) {
+            objectives[numberOfObjectives - 1] = fitness;
+        } else {
+            objectives[1] = ratioOfFailuresInPositive;
+            objectives[2] = ratioOfFailuresInNegative;
+        }
+        if (numberOfObjectives == 2 || numberOfObjectives == 3) {
+            objectives[0] = numberOfEdits;
+        }
+        return !isDominatedInRacingPopulation(objectives);
+    }
+
+    void finish(Variant variant) {
+        Solution solution = variant.solution;
+        Map<String, String> modifiedJavaSources = variant.modifiedJavaSources;
+        List<Map.Entry<Integer, Double>> list = variant.list;
+        int numberOfEdits = variant.numberOfEdits;
+
+        List<String> solutionMessages = new ArrayList<String>();
+
+        if (variant.testRun != null && !checkCompilation(variant.testRun, modifiedJavaSources)) {
+            variant.testRun = null;
+        }
 
         boolean status = false;
-        if (compiledClasses != null) {
+        if (variant.testRun != null) {
             if (numberOfObjectives == 2 || numberOfObjectives == 3) {
                 solution.setObjective(0, numberOfEdits);
             }
-            try {
-                status = invokeTestExecutor(compiledClasses, solution, modifiedLines);
-            } catch (Exception e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+            if (variant.testRun.exception != null) {
+                variant.testRun.exception.printStackTrace();
+                assignMaxObjectiveValues(solution);
+            } else {
+                status = processTestResults(variant.testRun, solution, variant.modifiedLines, solutionMessages);
             }
         } else {
             assignMaxObjectiveValues(solution);
             System.out.println("Compilation fails!");
         }
 
+        int id = nextGlobalID();
         if (status) {
             solutionMessages.add("Repair patch found");
-            save(solution, modifiedJavaSources, compiledClasses, list, numberOfEdits);
+            save(solution, modifiedJavaSources, variant.testRun.compiledClasses, list, numberOfEdits, id);
         } else {
             solutionMessages.add("Repair patch absent");
         }
 
         try {
-            File file = new File(this.patchOutputRoot + "/PatchTestInfo/", "Patch_" + globalID + ".tests");
+            File file = new File(this.patchOutputRoot + "/PatchTestInfo/", "Patch_" + id + ".tests");
             Collections.sort(solutionMessages);
             FileUtils.writeLines(file, solutionMessages, "\n", true);
         } catch (IOException e) {
             System.out.println("Error occured when writing logFile: " + e.getMessage());
         }
 
-        globalID++;
-        evaluations++;
+        // the estimates of a variant cut short depend on the population
+        if (variant.testRun == null || (variant.testRun.exception == null && !variant.testRun.isCut)) {
+            cacheEvaluation(variant.canonicalEdits, solution);
+        }
+        increaseEvaluations();
         System.out.println("One fitness evaluation is finished...");
     }
 
     void save(Solution solution, Map<String, String> modifiedJavaSources, Map<String, JavaFileObject> compiledClasses,
-            List<Map.Entry<Integer, Double>> list, int numberOfEdits) {
+            List<Map.Entry<Integer, Double>> list, int numberOfEdits, int id) {
         List<Integer> opList = new ArrayList<>();
         List<Integer> locList = new ArrayList<>();
         List<Integer> ingredList = new ArrayList<>();
@@ -257,13 +469,13 @@ public class ArjaProblem extends AbstractRepairProblem {
             if (addTestAdequatePatch(opList, locList, ingredList)) {
                 if (diffFormat) {
                     try {
-                        IO.savePatch(modifiedJavaSources, srcJavaDir, this.patchOutputRoot, globalID);
+                        IO.savePatch(modifiedJavaSources, srcJavaDir, this.patchOutputRoot, id);
                     } catch (InterruptedException e) {
                         // TODO Auto-generated catch block
                         e.printStackTrace();
                     }
                 }
-                saveTestAdequatePatch(opList, locList, ingredList);
+                saveTestAdequatePatch(opList, locList, ingredList, id);
             }
         } catch (IOException e) {
             // TODO Auto-generated catch block
@@ -271,29 +483,28 @@ public class ArjaProblem extends AbstractRepairProblem {
         }
     }
 
-    boolean manipulateOneModificationPoint(int i, int size, int array[], Map<String, ASTRewrite> astRewriters)
-            throws JMException {
+    boolean manipulateOneModificationPoint(int i, int size, int array[], Map<String, ASTRewrite> astRewriters,
+            MutantSchema.Switches switches) throws JMException {
         ModificationPoint mp = modificationPoints.get(i);
         String manipName = availableManipulations.get(i).get(array[i]);
-        Statement ingredStatement = null;
-        if (!mp.getIngredients().isEmpty()) {
-            ingredStatement = mp.getIngredients().get(array[i + size]);
-        }
+        Statement ingredStatement = getIngredStatement(i, size, array);
 
-        return manipulateOneModificationPoint(mp, manipName, ingredStatement, astRewriters);
+        return manipulateOneModificationPoint(mp, manipName, ingredStatement, astRewriters, switches);
     }
 
-    boolean invokeTestExecutor(Map<String, JavaFileObject> compiledClasses, Solution solution, List<LCNode> modifiedLines) throws Exception {
-        Set<String> samplePosTests = getSamplePositiveTests();
-        ITestExecutor testExecutor = getTestExecutor(compiledClasses, samplePosTests);
-
-        boolean status = testExecutor.runTests();
-
-        if (status && percentage != null && percentage < 1) {
-            testExecutor = getTestExecutor(compiledClasses, positiveTests);
-            status = testExecutor.runTests();
+    Statement getIngredStatement(int i, int size, int array[]) {
+        ModificationPoint mp = modificationPoints.get(i);
+        if (mp.getIngredients().isEmpty()) {
+            return null;
         }
+        return mp.getIngredients().get(array[i + size]);
+    }
 
+    boolean processTestResults(TestRun testRun, Solution solution, List<LCNode> modifiedLines,
+            List<String> solutionMessages) {
+        ITestExecutor testExecutor = testRun.testExecutor;
+        boolean status = testRun.status;
+        boolean isPartial = testExecutor.isLowerBound() || testRun.isCut;
         if (!testExecutor.isExceptional()) {
             Set<String> passPassTests = new HashSet(positiveTests);
             Set<String> failPassTests = new HashSet(negativeTests);
@@ -323,21 +534,42 @@ public class ArjaProblem extends AbstractRepairProblem {
                 }
             }
 
-            for (String s : passPassTests) {
-                String message = String.format("[PASS->PASS] test case found: %s", s);
-                // System.out.println(message);
-                solutionMessages.add(message);
-            }
+            // After a fail-fast run, the tests that did not fail may not have been run at all,
+            // and neither have the positive tests outside the sample of a run cut short by racing
+            if (testExecutor.isLowerBound()) {
+                solutionMessages.add("[PARTIAL] test run stopped at the first failure");
+            } else if (testRun.isCut) {
+                solutionMessages.add("[PARTIAL] test run cut short by racing");
+            } else {
+                for (String s : passPassTests) {
+                    String message = String.format("[PASS->PASS] test case found: %s", s);
+                    // System.out.println(message);
+                    solutionMessages.add(message);
+                }
 
-            for (String s : failPassTests) {
-                String message = String.format("[FAIL->PASS] test case found: %s", s);
-                // System.out.println(message);
-                solutionMessages.add(message);
+                for (String s : failPassTests) {
+                    String message = String.format("[FAIL->PASS] test case found: %s", s);
+                    // System.out.println(message);
+                    solutionMessages.add(message);
+                }
             }
 
             double ratioOfFailuresInPositive = testExecutor.getRatioOfFailuresInPositive();
             double ratioOfFailuresInNegative = testExecutor.getRatioOfFailuresInNegative();
-            double fitness = weight * testExecutor.getRatioOfFailuresInPositive() + testExecutor.getRatioOfFailuresInNegative();
+            if (testExecutor.isLowerBound()) {
+                // the tests not run are counted as failed; the negative tests
+                // run first, so they have all run if a positive test failed
+                ratioOfFailuresInPositive = 1;
+                if (testExecutor.getFailureCountInPositive() == 0) {
+                    ratioOfFailuresInNegative = 1;
+                }
+            } else if (testRun.isCut) {
+                // the failure rate on all positive tests is at most this
+                // with the racing confidence
+                ratioOfFailuresInPositive = Math.min(1,
+                        ratioOfFailuresInPositive + getRacingBound(testRun.samplePosTests.size()));
+            }
+            double fitness = weight * ratioOfFailuresInPositive + ratioOfFailuresInNegative;
 
             System.out.println("Number of failed tests: " + (testExecutor.getFailureCountInNegative() + testExecutor.getFailureCountInPositive()));
             System.out.println("Weighted failure rate: " + fitness);
@@ -349,31 +581,39 @@ public class ArjaProblem extends AbstractRepairProblem {
                 solution.setObjective(2, ratioOfFailuresInNegative);
             }
 
-            Map<String, Double> modifiedMethods = new TreeMap<>();
-
-            for (LCNode lcn : modifiedLines) {
-                String fullMethodName = proflMethodCoverage.lookup(lcn.getClassName(), lcn.getLineNumber());
-                String solutionMessage = String.format("Modified method %s at lineNumber=%d",
-                        fullMethodName,
-                        lcn.getLineNumber());
-                System.out.println(solutionMessage);
-                solutionMessages.add(solutionMessage);
-                modifiedMethods.put(fullMethodName, profl.getGeneralMethodSusValues().get(fullMethodName));
+            // a partial run cannot be categorised
+            if (isPartial) {
+                return status;
             }
 
             String solutionMessage;
-            if (failedTests.isEmpty()) {
-                solutionMessage = "PatchCategory = CleanFix";
-                profl.addCategoryEntry(PatchCategory.CleanAllFix, modifiedMethods);
-            } else if (!failPassTests.isEmpty() || !passFailTests.isEmpty()) {
-                solutionMessage = "PatchCategory = NoisyFix";
-                profl.addCategoryEntry(PatchCategory.NoisyAllFix, modifiedMethods);
-            } else if (passFailTests.isEmpty() && failPassTests.isEmpty()) {
-                solutionMessage = "PatchCategory = NoneFix";
-                profl.addCategoryEntry(PatchCategory.NoneFix, modifiedMethods);
-            } else {
-                solutionMessage = "PatchCategory = NegFix";
-                profl.addCategoryEntry(PatchCategory.NegFix, modifiedMethods);
+            // the fault localization results are shared by all evaluations
+            synchronized (profl) {
+                Map<String, Double> modifiedMethods = new TreeMap<>();
+
+                for (LCNode lcn : modifiedLines) {
+                    String fullMethodName = proflMethodCoverage.lookup(lcn.getClassName(), lcn.getLineNumber());
+                    String message = String.format("Modified method %s at lineNumber=%d",
+                            fullMethodName,
+                            lcn.getLineNumber());
+                    System.out.println(message);
+                    solutionMessages.add(message);
+                    modifiedMethods.put(fullMethodName, profl.getGeneralMethodSusValues().get(fullMethodName));
+                }
+
+                if (failedTests.isEmpty()) {
+                    solutionMessage = "PatchCategory = CleanFix";
+                    profl.addCategoryEntry(PatchCategory.CleanAllFix, modifiedMethods);
+                } else if (!failPassTests.isEmpty() || !passFailTests.isEmpty()) {
+                    solutionMessage = "PatchCategory = NoisyFix";
+                    profl.addCategoryEntry(PatchCategory.NoisyAllFix, modifiedMethods);
+                } else if (passFailTests.isEmpty() && failPassTests.isEmpty()) {
+                    solutionMessage = "PatchCategory = NoneFix";
+                    profl.addCategoryEntry(PatchCategory.NoneFix, modifiedMethods);
+                } else {
+                    solutionMessage = "PatchCategory = NegFix";
+                    profl.addCategoryEntry(PatchCategory.NegFix, modifiedMethods);
+                }
             }
 
             System.out.println(solutionMessage);
@@ -387,6 +627,22 @@ public class ArjaProblem extends AbstractRepairProblem {
         return status;
     }
 
+    static class Variant {
+
+        Solution solution;
+        Map<String, String> modifiedJavaSources;
+        List<Map.Entry<Integer, Double>> list;
+        int numberOfEdits;
+        List<LCNode> modifiedLines;
+        Set<Edit> canonicalEdits;
+        Variant original;
+        MutantSchema.Switches switches;
+        List<Edit> edits;
+        Map<String, ASTRewrite> astRewriters;
+        EvaluationPipeline.Ticket<PipelinedVariant> ticket;
+        TestRun testRun;
+    }
+
     void assignMaxObjectiveValues(Solution solution) {
         for (int i = 0; i < solution.getNumberOfObjectives(); i++) {
             solution.setObjective(i, Double.MAX_VALUE);
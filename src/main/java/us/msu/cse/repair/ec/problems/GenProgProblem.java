@@ -1,18 +1,23 @@
 package us.msu.cse.repair.ec.problems;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.tools.JavaFileObject;
 import jmetal.core.Solution;
+import jmetal.core.SolutionSet;
 import jmetal.util.JMException;
 import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
 import us.msu.cse.repair.core.AbstractRepairProblem;
+import us.msu.cse.repair.core.compiler.MutantSchema;
+import us.msu.cse.repair.core.manipulation.Edit;
 import us.msu.cse.repair.core.parser.ModificationPoint;
 import us.msu.cse.repair.core.testexecutors.ITestExecutor;
+import us.msu.cse.repair.core.util.EvaluationPipeline;
 import us.msu.cse.repair.core.util.IO;
 import us.msu.cse.repair.ec.representation.GenProgSolutionType;
 import us.msu.cse.repair.ec.variable.Edits;
@@ -73,6 +78,76 @@ public class GenProgProblem extends AbstractRepairProblem {
     @Override
     public void evaluate(Solution solution) throws JMException {
         // TODO Auto-generated method stub
+        SolutionSet solutionSet = new SolutionSet(1);
+        solutionSet.add(solution);
+        evaluate(solutionSet);
+    }
+
+    /**
+     * Builds all variants first, one at a time as the ASTs are shared, then
+     * compiles them and runs their tests together on the evaluation threads,
+     * and finally assigns the fitness values. With the evaluation pipeline,
+     * each variant is instead handed over as soon as it is built. Solutions
+     * may be evaluated concurrently. A solution making the same edits as one
+     * evaluated before, or as another one of the same set, takes its fitness
+     * value.
+     */
+    @Override
+    public void evaluate(SolutionSet solutionSet) throws JMException {
+        List<Variant> variants = new ArrayList<Variant>();
+        List<Variant> duplicates = new ArrayList<Variant>();
+        Map<Object, Variant> originals = (evaluationCache == null) ? null : new HashMap<Object, Variant>();
+        synchronized (sourceASTs) {
+            for (int i = 0; i < solutionSet.size(); i++) {
+                long startTime = System.nanoTime();
+                Variant variant = prepare(solutionSet.get(i), originals);
+                if (variant == null) {
+                    continue;
+                }
+                if (variant.original != null) {
+                    duplicates.add(variant);
+                } else {
+                    variants.add(variant);
+                    // a variant made only of blacklisted edits is rejected
+                    if (isPipelined() && !variant.edits.isEmpty()) {
+                        variant.ticket = submitToPipeline(variant.modifiedJavaSources, variant.switches,
+                                variant.solution, System.nanoTime() - startTime);
+                    }
+                }
+            }
+        }
+
+        if (isPipelined()) {
+            awaitVariants(variants);
+        } else {
+            compileVariants(variants);
+
+            List<TestRun> testRuns = new ArrayList<TestRun>();
+            for (Variant variant : variants) {
+                if (variant.testRun != null) {
+                    testRuns.add(variant.testRun);
+                }
+            }
+            runTests(testRuns);
+        }
+
+        for (Variant variant : variants) {
+            finish(variant);
+        }
+        // the original has just been evaluated, or assigned the maximum value
+        // if its tests could not be run, so it is not looked up in the cache
+        for (Variant variant : duplicates) {
+            shareEvaluation(variant.original.solution, variant.solution);
+        }
+    }
+
+    /**
+     * Applies the edits of the solution. Returns null if its edits are
+     * cached, in which case it is already evaluated, and a variant without
+     * sources if the same edits are made by one of the given variants, which
+     * is then its original.
+     */
+    Variant prepare(Solution solution, Map<Object, Variant> originals) throws JMException {
         System.out.println("One fitness evaluation starts...");
         Edits edits = (Edits) solution.getDecisionVariables()[0];
         List<Integer> locList = edits.getLocList();
@@ -81,6 +156,7 @@ public class GenProgProblem extends AbstractRepairProblem {
 
         Map<String, ASTRewrite> astRewriters = new HashMap<String, ASTRewrite>();
 
+        List<Edit> appliedEdits = new ArrayList<Edit>();
         for (int i = 0; i < locList.size(); i++) {
             int loc = locList.get(i);
             int op = opList.get(i);
@@ -88,19 +164,105 @@ public class GenProgProblem extends AbstractRepairProblem {
             ModificationPoint mp = modificationPoints.get(loc);
             String manipName = availableManipulations.get(loc).get(op);
             Statement ingredStatement = mp.getIngredients().get(ingred);
-            manipulateOneModificationPoint(mp, manipName, ingredStatement, astRewriters);
+            // the edits learned not to compile are skipped
+            if (!isBlacklisted(mp, manipName, ingredStatement)) {
+                appliedEdits.add(new Edit(mp, manipName, ingredStatement));
+            }
         }
 
-        Map<String, String> modifiedJavaSources = getModifiedJavaSources(astRewriters);
-        Map<String, JavaFileObject> compiledClasses = getCompiledClassesForTestExecution(modifiedJavaSources);
+        // several edits may be made at the same modification point, so the
+        // order of the edits matters
+        if (lookUpEvaluation(appliedEdits, solution)) {
+            return null;
+        }
+
+        Variant variant = new Variant();
+        variant.solution = solution;
+        variant.edits = appliedEdits;
+        if (originals != null) {
+            variant.original = originals.get(appliedEdits);
+            if (variant.original != null) {
+                return variant;
+            }
+            originals.put(appliedEdits, variant);
+        }
+
+        MutantSchema.Switches switches = newSwitches();
+        for (Edit edit : appliedEdits) {
+            manipulateOneModificationPoint(edit.getModificationPoint(), edit.getManipName(),
+                    edit.getIngredStatement(), astRewriters, switches);
+        }
+        variant.modifiedJavaSources = getModifiedJavaSources(astRewriters, appliedEdits);
+        variant.switches = switches;
+        variant.astRewriters = astRewriters;
+        return variant;
+    }
+
+    /**
+     * Compiles the variants, and learns from those that do not compile.
+     */
+    void compileVariants(List<Variant> variants) throws JMException {
+        List<Map<String, String>> javaSources = new ArrayList<Map<String, String>>();
+        List<MutantSchema.Switches> switches = new ArrayList<MutantSchema.Switches>();
+        List<List<String>> errors = new ArrayList<List<String>>();
+        for (Variant variant : variants) {
+            // a variant made only of blacklisted edits is rejected
+            javaSources.add(variant.edits.isEmpty() ? null : variant.modifiedJavaSources);
+            switches.add(variant.switches);
+            errors.add(new ArrayList<String>());
+        }
+
+        List<TestRun> testRuns = getTestRuns(javaSources, switches, errors);
+        synchronized (sourceASTs) {
+            for (int i = 0; i < variants.size(); i++) {
+                Variant variant = variants.get(i);
+                variant.testRun = testRuns.get(i);
+                if (variant.testRun != null) {
+                    variant.testRun.solution = variant.solution;
+                } else if (!variant.edits.isEmpty()) {
+                    learnFromCompilationFailure(variant.edits, variant.astRewriters, errors.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the variants handed over to the evaluation pipeline, and
+     * learns from those that do not compile.
+     */
+    void awaitVariants(List<Variant> variants) throws JMException {
+        List<PipelinedVariant> results = new ArrayList<PipelinedVariant>();
+        for (Variant variant : variants) {
+            results.add(variant.ticket == null ? null : awaitPipeline(variant.ticket));
+        }
+
+        synchronized (sourceASTs) {
+            for (int i = 0; i < variants.size(); i++) {
+                Variant variant = variants.get(i);
+                if (results.get(i) != null) {
+                    variant.testRun = results.get(i).testRun;
+                    if (variant.testRun == null) {
+                        learnFromCompilationFailure(variant.edits, variant.astRewriters, results.get(i).errors);
+                    }
+                }
+            }
+        }
+    }
+
+    void finish(Variant variant) {
+        Solution solution = variant.solution;
+
+        if (variant.testRun != null && !checkCompilation(variant.testRun, variant.modifiedJavaSources)) {
+            variant.testRun = null;
+        }
 
         boolean status = false;
-        if (compiledClasses != null) {
-            try {
-                status = invokeTestExecutor(compiledClasses, solution);
-            } catch (Exception e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+        if (variant.testRun != null) {
+            if (variant.testRun.exception != null) {
+                variant.testRun.exception.printStackTrace();
+                solution.setObjective(0, Double.MAX_VALUE);
+            } else {
+                status = processTestResults(variant.testRun, solution);
             }
         } else {
             solution.setObjective(0, Double.MAX_VALUE);
@@ -108,10 +270,13 @@ public class GenProgProblem extends AbstractRepairProblem {
         }
 
         if (status) {
-            save(solution, modifiedJavaSources, compiledClasses);
+            save(solution, variant.modifiedJavaSources, variant.testRun.compiledClasses);
         }
 
-        evaluations++;
+        if (variant.testRun == null || variant.testRun.exception == null) {
+            cacheEvaluation(variant.edits, solution);
+        }
+        increaseEvaluations();
         System.out.println("One fitness evaluation is finished...");
     }
 
@@ -122,16 +287,16 @@ public class GenProgProblem extends AbstractRepairProblem {
         List<Integer> ingredList = edits.getIngredList();
         try {
             if (addTestAdequatePatch(opList, locList, ingredList)) {
+                int id = nextGlobalID();
                 if (diffFormat) {
                     try {
-                        IO.savePatch(modifiedJavaSources, srcJavaDir, this.patchOutputRoot, globalID);
+                        IO.savePatch(modifiedJavaSources, srcJavaDir, this.patchOutputRoot, id);
                     } catch (InterruptedException e) {
                         // TODO Auto-generated catch block
                         e.printStackTrace();
                     }
                 }
-                saveTestAdequatePatch(opList, locList, ingredList);
-                globalID++;
+                saveTestAdequatePatch(opList, locList, ingredList, id);
             }
         } catch (IOException e) {
             // TODO Auto-generated catch block
@@ -139,17 +304,21 @@ public class GenProgProblem extends AbstractRepairProblem {
         }
     }
 
-    boolean invokeTestExecutor(Map<String, JavaFileObject> compiledClasses, Solution solution) throws Exception {
-        Set<String> samplePosTests = getSamplePositiveTests();
-        ITestExecutor testExecutor = getTestExecutor(compiledClasses, samplePosTests);
-        boolean status = testExecutor.runTests();
-        if (status && percentage != null && percentage < 1) {
-            testExecutor = getTestExecutor(compiledClasses, getPositiveTests());
-            status = testExecutor.runTests();
-        }
+    boolean processTestResults(TestRun testRun, Solution solution) {
+        Set<String> samplePosTests = testRun.samplePosTests;
+        ITestExecutor testExecutor = testRun.testExecutor;
 
         int failureCountInPositive = testExecutor.getFailureCountInPositive();
         int failureCountInNegative = testExecutor.getFailureCountInNegative();
+        if (testExecutor.isLowerBound()) {
+            // after a fail-fast run, the tests not run are counted as failed;
+            // the negative tests run first, so they have all run if a
+            // positive test failed
+            if (failureCountInPositive == 0) {
+                failureCountInNegative = negativeTests.size();
+            }
+            failureCountInPositive = samplePosTests.size();
+        }
 
         boolean allFailed = (failureCountInPositive == samplePosTests.size()
                 && failureCountInNegative == negativeTests.size());
@@ -163,7 +332,18 @@ public class GenProgProblem extends AbstractRepairProblem {
             System.out.println("Timeout occurs!");
         }
 
-        return status;
+        return testRun.status;
     }
 
+    static class Variant {
+
+        Solution solution;
+        Map<String, String> modifiedJavaSources;
+        Variant original;
+        MutantSchema.Switches switches;
+        List<Edit> edits;
+        Map<String, ASTRewrite> astRewriters;
+        EvaluationPipeline.Ticket<PipelinedVariant> ticket;
+        TestRun testRun;
+    }
 }